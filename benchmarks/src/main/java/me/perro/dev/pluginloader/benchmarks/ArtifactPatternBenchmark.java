@@ -0,0 +1,55 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.RepositorySpec;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparación del nombre de un artefacto con el patrón configurado en el repositorio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactPatternBenchmark {
+
+    @Param({"*.jar", "MyPlugin-*-shaded.jar", "plugin-build-?.jar"})
+    public String pattern;
+
+    private RepositorySpec spec;
+
+    @Setup(Level.Trial)
+    public void createSpec() {
+        MemoryConfiguration section = new MemoryConfiguration();
+        section.set("owner", "owner");
+        section.set("repo", "repo");
+        section.set("workflow", "build.yml");
+        section.set("artifact", pattern);
+        spec = RepositorySpec.parse("bench", section);
+    }
+
+    @Benchmark
+    public boolean matchingName() {
+        return spec.matchesArtifact("MyPlugin-1.0.0-shaded.jar");
+    }
+
+    @Benchmark
+    public boolean nonMatchingName() {
+        return spec.matchesArtifact("MyPlugin-1.0.0-sources.zip");
+    }
+}
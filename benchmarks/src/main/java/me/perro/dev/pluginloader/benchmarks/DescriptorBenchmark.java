@@ -0,0 +1,56 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.SubPluginDescriptor;
+import org.bukkit.plugin.InvalidPluginException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura y validación del plugin.yml de un sub-plugin (lo que se hace antes de cargarlo),
+ * con JARs de distinto número de clases
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptorBenchmark {
+
+    @Param({"10", "5000"})
+    public int classCount;
+
+    private File fixtures;
+    private File jarFile;
+
+    @Setup(Level.Trial)
+    public void createJar() throws IOException {
+        fixtures = Fixtures.createTempFolder("descriptor");
+        jarFile = Fixtures.createPluginJar(fixtures, classCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJar() throws IOException {
+        Fixtures.deleteRecursively(fixtures);
+    }
+
+    @Benchmark
+    public SubPluginDescriptor readDescriptor() throws InvalidPluginException {
+        return SubPluginDescriptor.read(jarFile);
+    }
+}
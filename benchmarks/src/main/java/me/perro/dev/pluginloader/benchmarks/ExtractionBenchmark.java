@@ -0,0 +1,77 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.JarExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracción de los JARs de un artefacto (lo que hace extractJarsFromZip), desde un ZIP en disco
+ * y en flujo, con un artefacto pequeño y uno de 200 MB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"1", "200"})
+    public int sizeMb;
+
+    private final JarExtractor extractor = new JarExtractor();
+    private File fixtures;
+    private File zipFile;
+    private File destFolder;
+
+    @Setup(Level.Trial)
+    public void createArtifact() throws IOException {
+        fixtures = Fixtures.createTempFolder("extract");
+        zipFile = Fixtures.createArtifactZip(fixtures, sizeMb * 1024L * 1024L, 2);
+    }
+
+    @Setup(Level.Invocation)
+    public void createDestination() throws IOException {
+        destFolder = Fixtures.createTempFolder("extract-out");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() throws IOException {
+        Fixtures.deleteRecursively(destFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArtifact() throws IOException {
+        Fixtures.deleteRecursively(fixtures);
+    }
+
+    @Benchmark
+    public List<JarExtractor.ExtractedJar> extractFromFile() throws IOException {
+        return extractor.extract(zipFile, destFolder);
+    }
+
+    @Benchmark
+    public List<JarExtractor.ExtractedJar> extractFromStream() throws IOException {
+        try (InputStream in = new FileInputStream(zipFile)) {
+            return extractor.extract(in, destFolder);
+        }
+    }
+}
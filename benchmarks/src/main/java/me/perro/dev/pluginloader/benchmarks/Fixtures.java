@@ -0,0 +1,157 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Genera los datos de prueba de los benchmarks en disco. Todo es determinista (semilla fija)
+ * para que los resultados de distintas ejecuciones se puedan comparar.
+ */
+final class Fixtures {
+    private static final long SEED = 0x504C4A4D48L;
+
+    private Fixtures() {
+    }
+
+    static File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory("pluginloader-bench-" + prefix).toFile();
+    }
+
+    static void deleteRecursively(File folder) throws IOException {
+        if (folder == null || !folder.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Crea un ZIP como los artefactos de GitHub Actions: uno o varios JARs (comprimidos con deflate,
+     * aunque su contenido ya esté comprimido) más algún archivo que no es JAR
+     * @param totalBytes Tamaño aproximado del contenido de los JARs
+     * @param jarCount Número de JARs en el ZIP
+     */
+    static File createArtifactZip(File folder, long totalBytes, int jarCount) throws IOException {
+        File zipFile = new File(folder, "artifact-" + totalBytes + ".zip");
+        try (OutputStream out = new FileOutputStream(zipFile)) {
+            writeArtifactZip(out, totalBytes, jarCount);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Igual que {@link #createArtifactZip}, pero escribe el ZIP en el flujo indicado
+     */
+    static void writeArtifactZip(OutputStream out, long totalBytes, int jarCount) throws IOException {
+        Random random = new Random(SEED);
+        byte[] chunk = new byte[64 * 1024];
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry("README.txt"));
+        zip.write("Artefacto de prueba".getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+
+        long perJar = totalBytes / jarCount;
+        for (int i = 0; i < jarCount; i++) {
+            zip.putNextEntry(new ZipEntry("build/libs/plugin-" + i + ".jar"));
+            writeRandom(zip, random, chunk, perJar);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Crea un JAR de plugin con su plugin.yml, la clase principal y otras clases de relleno
+     * @param classCount Número de entradas de relleno (el índice central crece con ellas)
+     */
+    static File createPluginJar(File folder, int classCount) throws IOException {
+        File jarFile = new File(folder, "BenchPlugin-" + classCount + ".jar");
+        Random random = new Random(SEED);
+        byte[] classBytes = new byte[2048];
+
+        String pluginYml = "name: BenchPlugin\n"
+                + "main: me.example.bench.BenchPlugin\n"
+                + "version: 1.0.0\n"
+                + "depend: [Vault]\n"
+                + "softdepend: [PlaceholderAPI, LuckPerms]\n"
+                + "loadbefore: Essentials\n"
+                + "commands:\n"
+                + "  bench:\n"
+                + "    description: Comando de prueba\n"
+                + "    aliases: [b, bp]\n"
+                + "  benchadmin:\n"
+                + "    aliases: ba\n";
+
+        try (ZipOutputStream jar = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            jar.putNextEntry(new ZipEntry("plugin.yml"));
+            jar.write(pluginYml.getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+
+            jar.putNextEntry(new ZipEntry("me/example/bench/BenchPlugin.class"));
+            random.nextBytes(classBytes);
+            jar.write(classBytes);
+            jar.closeEntry();
+
+            for (int i = 0; i < classCount; i++) {
+                jar.putNextEntry(new ZipEntry("me/example/bench/generated/Class" + i + ".class"));
+                random.nextBytes(classBytes);
+                jar.write(classBytes);
+                jar.closeEntry();
+            }
+        }
+        return jarFile;
+    }
+
+    /**
+     * Genera una respuesta de /actions/runs/{id}/artifacts con el mismo aspecto que la de GitHub,
+     * incluido el objeto workflow_run anidado de cada artefacto
+     */
+    static String artifactsResponse(int artifactCount) {
+        StringBuilder json = new StringBuilder(artifactCount * 900);
+        json.append("{\"total_count\":").append(artifactCount).append(",\"artifacts\":[");
+        for (int i = 0; i < artifactCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            long id = 1_000_000_000L + i;
+            json.append("{\"id\":").append(id)
+                    .append(",\"node_id\":\"MDg6QXJ0aWZhY3Q").append(id).append("\"")
+                    .append(",\"name\":\"plugin-build-").append(i).append(".jar\"")
+                    .append(",\"size_in_bytes\":").append(1_048_576L + i * 37L)
+                    .append(",\"url\":\"https://api.github.com/repos/owner/repo/actions/artifacts/").append(id).append("\"")
+                    .append(",\"archive_download_url\":\"https://api.github.com/repos/owner/repo/actions/artifacts/")
+                    .append(id).append("/zip\"")
+                    .append(",\"expired\":false")
+                    .append(",\"created_at\":\"2024-01-01T00:00:00Z\"")
+                    .append(",\"updated_at\":\"2024-01-01T00:05:00Z\"")
+                    .append(",\"expires_at\":\"2024-04-01T00:00:00Z\"")
+                    .append(",\"workflow_run\":{\"id\":").append(9_000_000_000L + i)
+                    .append(",\"repository_id\":123456,\"head_repository_id\":123456")
+                    .append(",\"head_branch\":\"main\",\"head_sha\":\"")
+                    .append(String.format("%040x", id)).append("\"}}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void writeRandom(OutputStream out, Random random, byte[] chunk, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            random.nextBytes(chunk);
+            int count = (int) Math.min(chunk.length, remaining);
+            out.write(chunk, 0, count);
+            remaining -= count;
+        }
+    }
+}
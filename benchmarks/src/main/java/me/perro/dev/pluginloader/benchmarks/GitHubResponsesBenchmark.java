@@ -0,0 +1,48 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.GitHubResponses;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura de respuestas grandes de /actions/runs/{id}/artifacts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitHubResponsesBenchmark {
+
+    @Param({"10", "1000"})
+    public int artifactCount;
+
+    private String response;
+
+    @Setup(Level.Trial)
+    public void createResponse() {
+        response = Fixtures.artifactsResponse(artifactCount);
+    }
+
+    @Benchmark
+    public List<GitHubResponses.Artifact> parseArtifacts() throws IOException, ParseException {
+        return GitHubResponses.parseArtifacts(new StringReader(response));
+    }
+}
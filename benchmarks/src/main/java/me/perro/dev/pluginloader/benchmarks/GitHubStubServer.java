@@ -0,0 +1,303 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servidor local que imita los endpoints de la API de GitHub Actions que usa PluginLoader:
+ * <ul>
+ *     <li>/repos/{owner}/{repo}/actions/workflows/{workflow}/runs</li>
+ *     <li>/repos/{owner}/{repo}/actions/runs/{id}/artifacts</li>
+ *     <li>/repos/{owner}/{repo}/actions/artifacts/{id}/zip</li>
+ * </ul>
+ * Cada repositorio tiene una ejecución y un artefacto (un ZIP sintético con un JAR). Se puede configurar
+ * la latencia, el límite de peticiones (con las cabeceras X-RateLimit-*) y la proporción de errores.
+ * Las respuestas de la API llevan ETag y responden 304 si no han cambiado, como GitHub.
+ */
+public class GitHubStubServer implements AutoCloseable {
+    private static final Pattern RUNS = Pattern.compile("/repos/([^/]+)/([^/]+)/actions/workflows/([^/]+)/runs");
+    private static final Pattern ARTIFACTS = Pattern.compile("/repos/([^/]+)/([^/]+)/actions/runs/(\\d+)/artifacts");
+    private static final Pattern DOWNLOAD = Pattern.compile("/repos/([^/]+)/([^/]+)/actions/artifacts/(\\d+)/zip");
+
+    private long latencyMillis;
+    private long latencyJitterMillis;
+    private double errorRate;
+    private int rateLimit;
+    private long rateLimitWindowMillis = TimeUnit.HOURS.toMillis(1);
+    private long artifactBytes = 64 * 1024;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile byte[] artifactZip;
+
+    // Una ejecución por repositorio; su ID cambia al llamar a publishNewRuns()
+    private final Map<String, Long> runIds = new ConcurrentHashMap<>();
+    private final AtomicLong nextRunId = new AtomicLong(1_000_000);
+    private final AtomicInteger rateLimitRemaining = new AtomicInteger();
+    private volatile long rateLimitResetAt;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    /**
+     * Latencia añadida a cada respuesta: fija más un valor aleatorio entre 0 y jitter
+     */
+    public GitHubStubServer latency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Proporción de peticiones (entre 0 y 1) que responden con un error 502
+     */
+    public GitHubStubServer errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Peticiones permitidas por ventana; al agotarlas se responde 403 hasta el reinicio. 0 para no limitar
+     */
+    public GitHubStubServer rateLimit(int limit, long windowMillis) {
+        this.rateLimit = limit;
+        this.rateLimitWindowMillis = windowMillis;
+        return this;
+    }
+
+    /**
+     * Tamaño aproximado del JAR de cada artefacto
+     */
+    public GitHubStubServer artifactBytes(long bytes) {
+        this.artifactBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre de 127.0.0.1
+     * @return La dirección base de la API, para github.api-url
+     */
+    public String start() throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE, artifactBytes + 1024));
+        Fixtures.writeArtifactZip(zip, artifactBytes, 1);
+        artifactZip = zip.toByteArray();
+
+        rateLimitRemaining.set(rateLimit);
+        rateLimitResetAt = System.currentTimeMillis() + rateLimitWindowMillis;
+
+        // Sin esto, el servidor HTTP del JDK envía las cabeceras y el cuerpo en paquetes separados y cada
+        // respuesta espera ~40 ms al ACK retardado del cliente, lo que taparía la latencia real del cliente
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", this::handle);
+        // Un hilo por petición, para que la latencia simulada no se acumule
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "GitHubStub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Simula una ejecución nueva del workflow en todos los repositorios
+     */
+    public void publishNewRuns() {
+        runIds.replaceAll((repo, runId) -> nextRunId.incrementAndGet());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.increment();
+            delay();
+
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!takeRateLimit(exchange)) {
+                rateLimited.increment();
+                sendJson(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                return;
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.increment();
+                sendJson(exchange, 502, "{\"message\":\"Server Error\"}");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            Matcher matcher;
+            if ((matcher = RUNS.matcher(path)).matches()) {
+                long runId = runIds.computeIfAbsent(matcher.group(1) + "/" + matcher.group(2), k -> nextRunId.incrementAndGet());
+                sendApi(exchange, "{\"total_count\":1,\"workflow_runs\":[{\"id\":" + runId
+                        + ",\"head_branch\":\"main\",\"status\":\"completed\",\"conclusion\":\"success\"}]}");
+            } else if ((matcher = ARTIFACTS.matcher(path)).matches()) {
+                String owner = matcher.group(1);
+                String repo = matcher.group(2);
+                long runId = Long.parseLong(matcher.group(3));
+                String downloadUrl = "http://127.0.0.1:" + server.getAddress().getPort()
+                        + "/repos/" + owner + "/" + repo + "/actions/artifacts/" + runId + "/zip";
+                sendApi(exchange, "{\"total_count\":1,\"artifacts\":[{\"id\":" + runId
+                        + ",\"name\":\"" + repo + ".jar\",\"size_in_bytes\":" + artifactZip.length
+                        + ",\"archive_download_url\":\"" + downloadUrl + "\",\"expired\":false"
+                        + ",\"workflow_run\":{\"id\":" + runId + ",\"head_branch\":\"main\"}}]}");
+            } else if (DOWNLOAD.matcher(path).matches()) {
+                sendArtifact(exchange, artifactZip);
+            } else {
+                sendJson(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Descarga del ZIP, completa o de un rango (bytes=a-b, bytes=a- o bytes=-n)
+    private void sendArtifact(HttpExchange exchange, byte[] zip) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/zip");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        int start = 0;
+        int end = zip.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0) {
+            String spec = range.substring(6).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    start = (int) Math.max(0, zip.length - Long.parseLong(spec.substring(1)));
+                } else {
+                    start = Integer.parseInt(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        end = (int) Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                start = 0;
+            }
+            if (start > end) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + zip.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + zip.length);
+        }
+
+        int length = end - start + 1;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(zip, start, length);
+        }
+        bytesServed.add(length);
+    }
+
+    private void delay() {
+        long millis = latencyMillis + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Descuenta una petición del límite y añade las cabeceras X-RateLimit-*
+    private boolean takeRateLimit(HttpExchange exchange) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= rateLimitResetAt) {
+            synchronized (this) {
+                if (now >= rateLimitResetAt) {
+                    rateLimitRemaining.set(rateLimit);
+                    rateLimitResetAt = now + rateLimitWindowMillis;
+                }
+            }
+        }
+        int remaining = rateLimitRemaining.decrementAndGet();
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(Math.max(0, remaining)));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(rateLimitResetAt)));
+        return remaining >= 0;
+    }
+
+    // Respuesta de la API con ETag; 304 si el cliente ya la tiene
+    private void sendApi(HttpExchange exchange, String json) throws IOException {
+        String etag = "\"" + Integer.toHexString(json.hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.increment();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        sendJson(exchange, 200, json);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesServed.add(body.length);
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
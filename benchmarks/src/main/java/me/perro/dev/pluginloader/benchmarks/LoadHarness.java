@@ -0,0 +1,315 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.ArtifactFingerprint;
+import me.perro.dev.pluginloader.GitHubApiException;
+import me.perro.dev.pluginloader.GitHubClient;
+import me.perro.dev.pluginloader.GitHubResponses;
+import me.perro.dev.pluginloader.HttpTransport;
+import me.perro.dev.pluginloader.JarExtractor;
+import me.perro.dev.pluginloader.Metrics;
+import me.perro.dev.pluginloader.RateLimitTracker;
+import me.perro.dev.pluginloader.RepositorySpec;
+import me.perro.dev.pluginloader.ResponseCache;
+import me.perro.dev.pluginloader.UrlConnectionTransport;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prueba de carga sin red: levanta un {@link GitHubStubServer} y comprueba (y opcionalmente descarga)
+ * muchos repositorios a la vez con el mismo cliente, caché y extractor que usa el plugin.
+ * Informa del rendimiento total y de la latencia por repositorio (p50, p90, p99, máx.) de cada ronda.
+ * <p>
+ * Solo mide esas capas: {@link GitHubClient} (con su transporte y {@link ResponseCache}), el servidor simulado y
+ * {@link JarExtractor}. El bucle de comprobación e instalación es una versión reducida del de {@code MainLoader}, que
+ * necesita un servidor Bukkit: no pasa por el executor de comprobaciones con su límite de tiempo, el programador,
+ * {@code VersionTracker}, el almacén de artefactos, la zona de preparación, la caché compartida, el regulador de
+ * descargas ni la recarga en caliente. Los cambios en esas partes no se reflejan en los resultados.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar me.perro.dev.pluginloader.benchmarks.LoadHarness \
+ *     --repos 1000 --concurrency 8 --latency 50 --jitter 50 --error-rate 0.01 --rounds 2 --out load-result.json
+ * </pre>
+ */
+public final class LoadHarness {
+    private int repos = 1000;
+    private int concurrency = 8;
+    private long latency = 20;
+    private long jitter = 30;
+    private double errorRate = 0;
+    private int rateLimit = 0;
+    private long artifactKb = 64;
+    private int rounds = 2;
+    private boolean newRuns = false;
+    private boolean download = true;
+    private boolean cache = true;
+    private boolean skipIdentical = false;
+    private String out = "load-result.json";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.parseArgs(args);
+        harness.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--repos": repos = Integer.parseInt(value); i++; break;
+                case "--concurrency": concurrency = Integer.parseInt(value); i++; break;
+                case "--latency": latency = Long.parseLong(value); i++; break;
+                case "--jitter": jitter = Long.parseLong(value); i++; break;
+                case "--error-rate": errorRate = Double.parseDouble(value); i++; break;
+                case "--rate-limit": rateLimit = Integer.parseInt(value); i++; break;
+                case "--artifact-kb": artifactKb = Long.parseLong(value); i++; break;
+                case "--rounds": rounds = Integer.parseInt(value); i++; break;
+                case "--out": out = value; i++; break;
+                case "--new-runs": newRuns = true; break;
+                case "--no-download": download = false; break;
+                case "--no-cache": cache = false; break;
+                case "--skip-identical": skipIdentical = true; break;
+                default:
+                    throw new IllegalArgumentException("Opción desconocida: " + args[i]
+                            + " (opciones: --repos, --concurrency, --latency, --jitter, --error-rate, --rate-limit,"
+                            + " --artifact-kb, --rounds, --out, --new-runs, --no-download, --no-cache, --skip-identical)");
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() throws Exception {
+        Logger logger = Logger.getLogger("PluginLoader-LoadHarness");
+        logger.setLevel(Level.WARNING);
+
+        File workFolder = Fixtures.createTempFolder("load");
+        try (GitHubStubServer stub = new GitHubStubServer()
+                .latency(latency, jitter)
+                .errorRate(errorRate)
+                .rateLimit(rateLimit, TimeUnit.HOURS.toMillis(1))
+                .artifactBytes(artifactKb * 1024)) {
+            String apiUrl = stub.start();
+
+            HttpTransport transport = new UrlConnectionTransport("PluginLoader-LoadHarness", 10_000, 30_000);
+            ResponseCache responseCache = cache ? new ResponseCache(workFolder, logger) : null;
+            GitHubClient client = new GitHubClient(apiUrl, transport, responseCache, new RateLimitTracker(0), new Metrics());
+            List<RepositorySpec> specs = createSpecs();
+            Map<String, Long> installedRuns = new ConcurrentHashMap<>();
+            Map<String, String> installedFingerprints = new ConcurrentHashMap<>();
+            JarExtractor extractor = new JarExtractor();
+
+            JSONArray results = new JSONArray();
+            ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+            try {
+                for (int round = 1; round <= rounds; round++) {
+                    if (round > 1 && newRuns) {
+                        stub.publishNewRuns();
+                    }
+                    long requestsBefore = stub.getRequests();
+                    long notModifiedBefore = stub.getNotModified();
+                    long bytesBefore = stub.getBytesServed();
+
+                    RoundResult result = runRound(executor, client, extractor, specs, installedRuns, installedFingerprints,
+                            new File(workFolder, "round-" + round));
+
+                    JSONObject json = result.toJson();
+                    json.put("round", round);
+                    json.put("httpRequests", stub.getRequests() - requestsBefore);
+                    json.put("notModified", stub.getNotModified() - notModifiedBefore);
+                    json.put("bytesServed", stub.getBytesServed() - bytesBefore);
+                    results.add(json);
+                    System.out.println(String.format(
+                            "Ronda %d: %d repos en %d ms (%.1f repos/s), p50=%.1f ms, p90=%.1f ms, p99=%.1f ms, máx=%.1f ms, "
+                                    + "%d descargas, %d idénticas, %d errores, %d peticiones HTTP (%d 304), %d KB servidos",
+                            round, specs.size(), result.wallMillis, result.throughput(),
+                            result.percentile(0.50), result.percentile(0.90), result.percentile(0.99), result.percentile(1.0),
+                            result.downloads.sum(), result.identical.sum(), result.errors.sum(),
+                            json.get("httpRequests"), json.get("notModified"), (Long) json.get("bytesServed") / 1024));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            JSONObject report = new JSONObject();
+            JSONObject config = new JSONObject();
+            config.put("repos", repos);
+            config.put("concurrency", concurrency);
+            config.put("latencyMillis", latency);
+            config.put("jitterMillis", jitter);
+            config.put("errorRate", errorRate);
+            config.put("rateLimit", rateLimit);
+            config.put("artifactKb", artifactKb);
+            config.put("download", download);
+            config.put("cache", cache);
+            config.put("newRuns", newRuns);
+            config.put("skipIdentical", skipIdentical);
+            report.put("config", config);
+            report.put("rounds", results);
+            report.put("injectedErrors", stub.getInjectedErrors());
+            report.put("rateLimited", stub.getRateLimited());
+
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)) {
+                report.writeJSONString(writer);
+            }
+            System.out.println("Resultados guardados en " + new File(out).getAbsolutePath());
+        } finally {
+            Fixtures.deleteRecursively(workFolder);
+        }
+    }
+
+    private List<RepositorySpec> createSpecs() {
+        List<RepositorySpec> specs = new ArrayList<>(repos);
+        for (int i = 0; i < repos; i++) {
+            MemoryConfiguration section = new MemoryConfiguration();
+            section.set("owner", "owner-" + (i % 50));
+            section.set("repo", "repo-" + i);
+            section.set("workflow", "build.yml");
+            section.set("artifact", "*.jar");
+            specs.add(RepositorySpec.parse("repo-" + i, section));
+        }
+        return specs;
+    }
+
+    private RoundResult runRound(ExecutorService executor, GitHubClient client, JarExtractor extractor,
+                                 List<RepositorySpec> specs, Map<String, Long> installedRuns,
+                                 Map<String, String> installedFingerprints, File destFolder) throws Exception {
+        RoundResult result = new RoundResult(specs.size());
+        List<Future<?>> futures = new ArrayList<>(specs.size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < specs.size(); i++) {
+            int index = i;
+            RepositorySpec spec = specs.get(i);
+            futures.add(executor.submit(() -> {
+                long taskStart = System.nanoTime();
+                try {
+                    checkAndInstall(client, extractor, spec, installedRuns, installedFingerprints, destFolder, result);
+                } catch (GitHubApiException e) {
+                    result.errors.increment();
+                    if (e.isRateLimited()) {
+                        result.rateLimited.increment();
+                    }
+                } catch (Exception e) {
+                    result.errors.increment();
+                }
+                result.latencies[index] = System.nanoTime() - taskStart;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        result.wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return result;
+    }
+
+    // Versión reducida de lo que hace el plugin con cada repositorio: última ejecución, artefactos, y descarga con
+    // extracción en flujo. No se instala nada: la versión "instalada" solo se recuerda en memoria
+    private void checkAndInstall(GitHubClient client, JarExtractor extractor, RepositorySpec spec,
+                                 Map<String, Long> installedRuns, Map<String, String> installedFingerprints,
+                                 File destFolder, RoundResult result) throws Exception {
+        Long runId = client.getLatestWorkflowRunId(spec);
+        if (runId == null) {
+            return;
+        }
+        for (GitHubResponses.Artifact artifact : client.getWorkflowRunArtifacts(spec, runId)) {
+            if (!spec.matchesArtifact(artifact.getName()) || runId.equals(installedRuns.get(spec.getKey()))) {
+                continue;
+            }
+            result.updates.increment();
+            if (!download) {
+                continue;
+            }
+            String installed = installedFingerprints.get(spec.getKey());
+            if (skipIdentical && installed != null
+                    && installed.equals(client.fetchArtifactFingerprint(artifact.getDownloadUrl(), spec.getToken()))) {
+                installedRuns.put(spec.getKey(), runId);
+                result.identical.increment();
+                continue;
+            }
+
+            File repoFolder = new File(destFolder, spec.getKey());
+            if (!repoFolder.mkdirs() && !repoFolder.isDirectory()) {
+                throw new IOException("No se pudo crear " + repoFolder);
+            }
+            List<JarExtractor.ExtractedJar> jars;
+            try (HttpTransport.Response response = client.openDownload(artifact.getDownloadUrl(), spec.getToken())) {
+                jars = extractor.extract(response.getBody(), repoFolder);
+            }
+            Fixtures.deleteRecursively(repoFolder);
+            installedRuns.put(spec.getKey(), runId);
+            installedFingerprints.put(spec.getKey(), ArtifactFingerprint.of(jars));
+            result.downloads.increment();
+        }
+    }
+
+    // Clase interna con los resultados de una ronda
+    private static class RoundResult {
+        final long[] latencies;
+        final LongAdder updates = new LongAdder();
+        final LongAdder downloads = new LongAdder();
+        final LongAdder identical = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rateLimited = new LongAdder();
+        long wallMillis;
+        private long[] sorted;
+
+        RoundResult(int size) {
+            this.latencies = new long[size];
+        }
+
+        double throughput() {
+            return latencies.length * 1000.0 / Math.max(1, wallMillis);
+        }
+
+        // Percentil de la latencia por repositorio, en milisegundos
+        double percentile(double percentile) {
+            if (sorted == null) {
+                sorted = latencies.clone();
+                Arrays.sort(sorted);
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("repos", latencies.length);
+            json.put("wallMillis", wallMillis);
+            json.put("reposPerSecond", throughput());
+            json.put("p50Millis", percentile(0.50));
+            json.put("p90Millis", percentile(0.90));
+            json.put("p99Millis", percentile(0.99));
+            json.put("p999Millis", percentile(0.999));
+            json.put("maxMillis", percentile(1.0));
+            json.put("updates", updates.sum());
+            json.put("downloads", downloads.sum());
+            json.put("identicalSkipped", identical.sum());
+            json.put("errors", errors.sum());
+            json.put("rateLimitedErrors", rateLimited.sum());
+            return json;
+        }
+    }
+}
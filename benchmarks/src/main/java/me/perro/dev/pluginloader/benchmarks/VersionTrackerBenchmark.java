@@ -0,0 +1,74 @@
+package me.perro.dev.pluginloader.benchmarks;
+
+import me.perro.dev.pluginloader.VersionTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Guardado de versiones con miles de plugins: un cambio suelto (registro en el diario)
+ * y una instantánea completa (saveVersionFile)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionTrackerBenchmark {
+
+    @Param({"1000", "5000"})
+    public int entries;
+
+    private File dataFolder;
+    private VersionTracker tracker;
+    private long runId;
+
+    @Setup(Level.Trial)
+    public void createTracker() throws IOException {
+        Logger logger = Logger.getLogger("PluginLoader-benchmarks");
+        logger.setLevel(java.util.logging.Level.OFF);
+
+        dataFolder = Fixtures.createTempFolder("versions");
+        tracker = new VersionTracker(dataFolder, logger);
+        for (int i = 0; i < entries; i++) {
+            tracker.updatePluginInfo("repo-" + i, String.valueOf(i), "run-" + i, i, "plugin-" + i + ".jar",
+                    String.format("%064x", i), 1_048_576L);
+        }
+        tracker.saveVersionFile();
+        runId = entries;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTracker() throws IOException {
+        tracker.close();
+        Fixtures.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public void updatePluginInfo() {
+        long id = ++runId;
+        tracker.updatePluginInfo("repo-" + (id % entries), String.valueOf(id), "run-" + id, id,
+                "plugin-" + id + ".jar", String.format("%064x", id), 1_048_576L);
+    }
+
+    @Benchmark
+    public void saveVersionFile() {
+        tracker.saveVersionFile();
+    }
+}
@@ -0,0 +1,248 @@
+package me.perro.dev.pluginloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Huella del contenido de un artefacto: el CRC32 y el tamaño de cada JAR que contiene.
+ * Se calcula al instalar (a partir de los JARs extraídos) y también a partir de un artefacto remoto, descargando
+ * con peticiones Range solo el directorio central del ZIP (normalmente unos pocos KB, sea cual sea el tamaño del ZIP).
+ * Si las dos coinciden, el artefacto contiene exactamente los mismos JARs que ya están instalados.
+ */
+public final class ArtifactFingerprint {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_SIZE = 22;
+    // El final del ZIP contiene el registro de fin de directorio, con un comentario de hasta 64 KB.
+    // Primero se piden unos pocos KB (suele bastar para el directorio entero) y solo si no está el registro, lo máximo
+    private static final int INITIAL_TAIL_SIZE = 8 * 1024;
+    private static final int TAIL_SIZE = EOCD_SIZE + 0xFFFF;
+    // Un directorio central mayor que esto no es un artefacto normal: mejor descargarlo
+    private static final int MAX_CENTRAL_DIRECTORY = 16 * 1024 * 1024;
+
+    private ArtifactFingerprint() {
+    }
+
+    /**
+     * @return La huella de los JARs extraídos de un artefacto
+     */
+    public static String of(List<JarExtractor.ExtractedJar> jars) {
+        List<String> parts = new ArrayList<>(jars.size());
+        for (JarExtractor.ExtractedJar jar : jars) {
+            parts.add(part(jar.getCrc32(), jar.getSize()));
+        }
+        return join(parts);
+    }
+
+    /**
+     * Calcula la huella de un artefacto remoto leyendo solo su directorio central
+     * @param headers Cabeceras de la petición (autenticación); se añade la cabecera Range
+     * @return La huella, o null si el servidor no admite peticiones Range o el ZIP no se puede interpretar
+     * @throws IOException Si falla la conexión
+     */
+    public static String fetch(HttpTransport transport, String url, Map<String, String> headers) throws IOException {
+        // 1. El final del archivo, donde está el registro de fin de directorio central
+        Tail tail = fetchTail(transport, url, headers, INITIAL_TAIL_SIZE);
+        int eocd = tail != null ? findEndOfCentralDirectory(tail.buffer) : -1;
+        if (tail != null && eocd < 0 && tail.start > 0) {
+            tail = fetchTail(transport, url, headers, TAIL_SIZE);
+            eocd = tail != null ? findEndOfCentralDirectory(tail.buffer) : -1;
+        }
+        if (eocd < 0) {
+            return null;
+        }
+        ByteBuffer tailBuffer = tail.buffer;
+        long tailStart = tail.start;
+        long cdSize = tailBuffer.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cdOffset = tailBuffer.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        // ZIP64: los valores reales están en el registro ZIP64, justo antes del localizador
+        if (cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            int locator = eocd - 20;
+            if (locator < 0 || tailBuffer.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                return null;
+            }
+            long zip64Eocd = tailBuffer.getLong(locator + 8) - tailStart;
+            if (zip64Eocd < 0 || zip64Eocd + 56 > tailBuffer.limit() || tailBuffer.getInt((int) zip64Eocd) != ZIP64_EOCD_SIGNATURE) {
+                return null;
+            }
+            cdSize = tailBuffer.getLong((int) zip64Eocd + 40);
+            cdOffset = tailBuffer.getLong((int) zip64Eocd + 48);
+        }
+        if (cdSize > MAX_CENTRAL_DIRECTORY) {
+            return null;
+        }
+
+        // 2. El directorio central, si no venía ya en el final del archivo
+        ByteBuffer centralDirectory;
+        if (cdOffset >= tailStart && cdOffset - tailStart + cdSize <= tailBuffer.limit()) {
+            centralDirectory = ByteBuffer.wrap(tailBuffer.array(), (int) (cdOffset - tailStart), (int) cdSize).slice();
+        } else {
+            Map<String, String> cdHeaders = new LinkedHashMap<>(headers);
+            cdHeaders.put("Range", "bytes=" + cdOffset + "-" + (cdOffset + cdSize - 1));
+            try (HttpTransport.Response response = transport.get(url, cdHeaders, false)) {
+                long[] range = parseContentRange(response.getHeader("Content-Range"));
+                if (response.getStatusCode() != HttpURLConnection.HTTP_PARTIAL || range == null || range[0] != cdOffset) {
+                    return null;
+                }
+                byte[] data = readFully(response.getBody(), (int) cdSize);
+                if (data.length < cdSize) {
+                    return null;
+                }
+                centralDirectory = ByteBuffer.wrap(data);
+            }
+        }
+
+        return parseCentralDirectory(centralDirectory.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    // Pide los últimos bytes del archivo. Null si el servidor no admite peticiones Range
+    private static Tail fetchTail(HttpTransport transport, String url, Map<String, String> headers, int size) throws IOException {
+        Map<String, String> tailHeaders = new LinkedHashMap<>(headers);
+        tailHeaders.put("Range", "bytes=-" + size);
+        try (HttpTransport.Response response = transport.get(url, tailHeaders, false)) {
+            if (response.getStatusCode() == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = parseContentRange(response.getHeader("Content-Range"));
+                return range != null ? new Tail(range[0], readFully(response.getBody(), size)) : null;
+            }
+            long length = contentLength(response);
+            if (response.getStatusCode() == 200 && length >= 0 && length <= size) {
+                // El ZIP entero es más pequeño que lo pedido
+                return new Tail(0, readFully(response.getBody(), size));
+            }
+            return null;
+        }
+    }
+
+    // Recorre las entradas del directorio central y se queda con las de los JARs
+    private static String parseCentralDirectory(ByteBuffer cd) {
+        List<String> parts = new ArrayList<>();
+        int position = 0;
+        while (position + 46 <= cd.limit()) {
+            if (cd.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                return null;
+            }
+            long crc = cd.getInt(position + 16) & 0xFFFFFFFFL;
+            long size = cd.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(position + 28) & 0xFFFF;
+            int extraLength = cd.getShort(position + 30) & 0xFFFF;
+            int commentLength = cd.getShort(position + 32) & 0xFFFF;
+            int nameStart = position + 46;
+            int extraStart = nameStart + nameLength;
+            if (extraStart + extraLength + commentLength > cd.limit()) {
+                return null;
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                nameBytes[i] = cd.get(nameStart + i);
+            }
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (size == 0xFFFFFFFFL) {
+                size = zip64Size(cd, extraStart, extraLength);
+                if (size < 0) {
+                    return null;
+                }
+            }
+            if (JarExtractor.isJar(new ZipEntry(name))) {
+                parts.add(part(crc, size));
+            }
+            position = extraStart + extraLength + commentLength;
+        }
+        return join(parts);
+    }
+
+    // Tamaño sin comprimir del campo extra ZIP64 (id 0x0001), que es el primer valor del campo
+    private static long zip64Size(ByteBuffer cd, int extraStart, int extraLength) {
+        int position = extraStart;
+        while (position + 4 <= extraStart + extraLength) {
+            int id = cd.getShort(position) & 0xFFFF;
+            int length = cd.getShort(position + 2) & 0xFFFF;
+            if (id == 0x0001 && length >= 8) {
+                return cd.getLong(position + 4);
+            }
+            position += 4 + length;
+        }
+        return -1;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - EOCD_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == EOCD_SIGNATURE
+                    && position + EOCD_SIZE + (tail.getShort(position + 20) & 0xFFFF) == tail.limit()) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    // Formato esperado: "bytes <inicio>-<fin>/<total>"
+    private static long[] parseContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+        try {
+            int dash = contentRange.indexOf('-');
+            int slash = contentRange.indexOf('/');
+            long start = Long.parseLong(contentRange.substring(6, dash).trim());
+            long end = Long.parseLong(contentRange.substring(dash + 1, slash).trim());
+            return new long[]{start, end};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long contentLength(HttpTransport.Response response) {
+        String length = response.getHeader("Content-Length");
+        try {
+            return length != null ? Long.parseLong(length.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxBytes, 64 * 1024));
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < maxBytes && (read = in.read(buffer, 0, Math.min(buffer.length, maxBytes - out.size()))) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String part(long crc, long size) {
+        return String.format("%08x:%d", crc, size);
+    }
+
+    // Clase interna con los últimos bytes del archivo y su posición
+    private static class Tail {
+        final long start;
+        final ByteBuffer buffer;
+
+        Tail(long start, byte[] data) {
+            this.start = start;
+            this.buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // Ordenado, para que no dependa del orden de las entradas en el ZIP
+    private static String join(List<String> parts) {
+        Collections.sort(parts);
+        return String.join(",", parts);
+    }
+}
@@ -0,0 +1,165 @@
+package me.perro.dev.pluginloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Almacén de JARs direccionado por contenido. Cada JAR se guarda una sola vez como
+ * {@code store/<sha256>.jar} y los archivos de sub-plugins son enlaces a esas copias,
+ * lo que permite volver a una versión anterior sin descargar nada.
+ * La fecha de modificación de cada archivo se usa como último acceso para el desalojo LRU.
+ */
+public class ArtifactStore {
+    private final File storeFolder;
+    private final File tempFolder;
+    private final Logger logger;
+
+    public ArtifactStore(File dataFolder, Logger logger) {
+        this.storeFolder = new File(dataFolder, "store");
+        this.tempFolder = new File(storeFolder, "tmp");
+        this.logger = logger;
+
+        if (!tempFolder.exists()) {
+            tempFolder.mkdirs();
+        }
+
+        // Restos de extracciones interrumpidas
+        File[] leftovers = tempFolder.listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                deleteRecursively(leftover);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Crea una carpeta temporal dentro del almacén para extraer un artefacto.
+     * Al estar en el mismo sistema de archivos, mover los JARs al almacén es un simple renombrado.
+     */
+    public File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(tempFolder.toPath(), prefix + "-").toFile();
+    }
+
+    /**
+     * Elimina una carpeta temporal creada con {@link #createTempFolder(String)} y lo que quede en ella
+     */
+    public void deleteTempFolder(File folder) {
+        deleteRecursively(folder);
+    }
+
+    /**
+     * Guarda un JAR extraído en el almacén. Si ya existe un JAR con el mismo contenido,
+     * se descarta el nuevo y se reutiliza el existente.
+     * @return El archivo del almacén con ese contenido
+     */
+    public synchronized File put(JarExtractor.ExtractedJar jar) throws IOException {
+        File blob = getFile(jar.getSha256());
+        if (blob.exists()) {
+            Files.deleteIfExists(jar.getFile().toPath());
+            logger.info("Contenido ya presente en el almacén, se reutiliza: " + jar.getSha256());
+        } else {
+            Files.move(jar.getFile().toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        touch(blob);
+        return blob;
+    }
+
+    /**
+     * Comprueba si el almacén contiene un JAR con ese hash
+     */
+    public boolean contains(String sha256) {
+        return sha256 != null && getFile(sha256).exists();
+    }
+
+    /**
+     * Coloca el JAR del almacén en la ruta indicada, como enlace duro si el sistema de archivos
+     * lo permite o como copia si no.
+     * @return El archivo creado
+     */
+    public synchronized File link(String sha256, File target) throws IOException {
+        File blob = getFile(sha256);
+        if (!blob.exists()) {
+            throw new IOException("El almacén no contiene " + sha256);
+        }
+
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), blob.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(blob.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        touch(blob);
+        return target;
+    }
+
+    /**
+     * Elimina los JARs usados hace más tiempo hasta que el almacén quepa en la cuota.
+     * Los hashes protegidos (versiones instaladas) nunca se eliminan.
+     * @param quotaBytes Tamaño máximo del almacén en bytes
+     * @param pinned Hashes que no se pueden eliminar
+     */
+    public synchronized void evict(long quotaBytes, Set<String> pinned) {
+        File[] blobs = storeFolder.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (blobs == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (File blob : blobs) {
+            totalSize += blob.length();
+        }
+        if (totalSize <= quotaBytes) {
+            return;
+        }
+
+        List<File> candidates = new ArrayList<>(Arrays.asList(blobs));
+        candidates.sort(Comparator.comparingLong(File::lastModified));
+
+        for (File blob : candidates) {
+            if (totalSize <= quotaBytes) {
+                break;
+            }
+            String sha256 = blob.getName().substring(0, blob.getName().length() - ".jar".length());
+            if (pinned.contains(sha256)) {
+                continue;
+            }
+            long size = blob.length();
+            if (blob.delete()) {
+                totalSize -= size;
+                logger.info("Eliminado del almacén por cuota de disco: " + blob.getName());
+            }
+        }
+
+        if (totalSize > quotaBytes) {
+            logger.warning("El almacén de artefactos ocupa " + (totalSize / (1024 * 1024)) + " MB y supera la cuota, pero todo su contenido está en uso.");
+        }
+    }
+
+    public File getFile(String sha256) {
+        return new File(storeFolder, sha256 + ".jar");
+    }
+
+    private void touch(File blob) {
+        if (!blob.setLastModified(System.currentTimeMillis())) {
+            logger.fine("No se pudo actualizar la fecha de acceso de " + blob.getName());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package me.perro.dev.pluginloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Índice en disco con los descriptores de los sub-plugins, para no tener que abrir cada JAR
+ * y leer su plugin.yml en cada arranque. Cada entrada se identifica por nombre de archivo,
+ * tamaño y fecha de modificación; si cualquiera cambia, se vuelve a leer el plugin.yml.
+ */
+public class DescriptorIndex {
+    private static final int MAGIC = 0x504C4449; // "PLDI"
+    private static final int FORMAT_VERSION = 3;
+
+    private final File indexFile;
+    private final Logger logger;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+
+    public DescriptorIndex(File dataFolder, Logger logger) {
+        this.indexFile = new File(dataFolder, "descriptor-index.dat");
+        this.logger = logger;
+        load();
+    }
+
+    /**
+     * Devuelve el descriptor guardado de un JAR si el JAR no ha cambiado desde que se indexó
+     * @return El descriptor, o null si el JAR no está en el índice o ha cambiado
+     */
+    public SubPluginDescriptor lookup(File jarFile) {
+        Entry entry = entries.get(jarFile.getName());
+        // Otra fecha con el mismo tamaño puede ser un JAR sustituido a mano: leer su plugin.yml
+        // cuesta menos que calcular el hash del archivo entero
+        if (entry == null || entry.size != jarFile.length() || entry.lastModified != jarFile.lastModified()) {
+            return null;
+        }
+
+        return entry.toDescriptor(jarFile);
+    }
+
+    /**
+     * Guarda (o reemplaza) el descriptor de un JAR recién leído
+     */
+    public void put(SubPluginDescriptor descriptor) {
+        File jarFile = descriptor.getFile();
+        Entry entry = new Entry();
+        entry.size = jarFile.length();
+        entry.lastModified = jarFile.lastModified();
+        entry.name = descriptor.getName();
+        entry.main = descriptor.getMain();
+        entry.version = descriptor.getVersion() != null ? descriptor.getVersion() : "";
+        entry.depend = descriptor.getDepend();
+        entry.softDepend = descriptor.getSoftDepend();
+        entry.loadBefore = descriptor.getLoadBefore();
+        entry.commands = descriptor.getCommands();
+        entry.commandPermissions = new LinkedHashMap<>();
+        for (String command : entry.commands.keySet()) {
+            String permission = descriptor.getCommandPermission(command);
+            if (permission != null) {
+                entry.commandPermissions.put(command, permission);
+            }
+        }
+        entries.put(jarFile.getName(), entry);
+        dirty = true;
+    }
+
+    /**
+     * Elimina del índice los JARs que ya no existen
+     */
+    public void retain(File[] jarFiles) {
+        Set<String> names = new HashSet<>();
+        for (File jarFile : jarFiles) {
+            names.add(jarFile.getName());
+        }
+        if (entries.keySet().retainAll(names)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Guarda el índice si ha cambiado, escribiendo a un archivo temporal y renombrándolo
+     */
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.name);
+                out.writeUTF(entry.main);
+                out.writeUTF(entry.version);
+                writeList(out, entry.depend);
+                writeList(out, entry.softDepend);
+                writeList(out, entry.loadBefore);
+                out.writeInt(entry.commands.size());
+                for (Map.Entry<String, List<String>> command : entry.commands.entrySet()) {
+                    out.writeUTF(command.getKey());
+                    writeList(out, command.getValue());
+                    String permission = entry.commandPermissions.get(command.getKey());
+                    out.writeUTF(permission != null ? permission : "");
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("No se pudo guardar el índice de sub-plugins: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            logger.warning("No se pudo guardar el índice de sub-plugins: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.info("El índice de sub-plugins tiene otro formato. Se regenerará.");
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = in.readUTF();
+                Entry entry = new Entry();
+                entry.size = in.readLong();
+                entry.lastModified = in.readLong();
+                entry.name = in.readUTF();
+                entry.main = in.readUTF();
+                entry.version = in.readUTF();
+                entry.depend = readList(in);
+                entry.softDepend = readList(in);
+                entry.loadBefore = readList(in);
+                int commandCount = in.readInt();
+                entry.commands = new LinkedHashMap<>();
+                entry.commandPermissions = new LinkedHashMap<>();
+                for (int c = 0; c < commandCount; c++) {
+                    String command = in.readUTF();
+                    entry.commands.put(command, readList(in));
+                    String permission = in.readUTF();
+                    if (!permission.isEmpty()) {
+                        entry.commandPermissions.put(command, permission);
+                    }
+                }
+                entries.put(fileName, entry);
+            }
+        } catch (IOException e) {
+            // Un índice dañado solo significa volver a leer los JARs
+            logger.warning("No se pudo leer el índice de sub-plugins (" + e.getMessage() + "). Se regenerará.");
+            entries.clear();
+        }
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    // Clase interna con los datos guardados de un JAR
+    private static class Entry {
+        long size;
+        long lastModified;
+        String name;
+        String main;
+        String version;
+        List<String> depend;
+        List<String> softDepend;
+        List<String> loadBefore;
+        Map<String, List<String>> commands;
+        Map<String, String> commandPermissions;
+
+        SubPluginDescriptor toDescriptor(File jarFile) {
+            return new SubPluginDescriptor(jarFile, name, main, version, depend, softDepend, loadBefore, commands, commandPermissions);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package me.perro.dev.pluginloader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Diario de una descarga parcial. Se guarda junto al archivo .part y permite continuar
+ * la descarga con una petición Range en lugar de empezar desde cero.
+ */
+public class DownloadJournal {
+    private final File journalFile;
+    private final String url;
+    private final String etag;
+    private long bytes;
+
+    public DownloadJournal(File journalFile, String url, String etag, long bytes) {
+        this.journalFile = journalFile;
+        this.url = url;
+        this.etag = etag;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Carga el diario de una descarga
+     * @return El diario, o null si no existe o no se puede leer
+     */
+    public static DownloadJournal load(File journalFile) {
+        if (!journalFile.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(journalFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+
+        String url = properties.getProperty("url");
+        if (url == null) {
+            return null;
+        }
+
+        long bytes;
+        try {
+            bytes = Long.parseLong(properties.getProperty("bytes", "0"));
+        } catch (NumberFormatException e) {
+            bytes = 0;
+        }
+
+        return new DownloadJournal(journalFile, url, properties.getProperty("etag"), bytes);
+    }
+
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (etag != null) {
+            properties.setProperty("etag", etag);
+        }
+        properties.setProperty("bytes", String.valueOf(bytes));
+
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete() {
+        journalFile.delete();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,48 @@
+package me.perro.dev.pluginloader;
+
+import java.io.IOException;
+
+/**
+ * Respuesta de error de la API de GitHub, con el código HTTP para poder decidir si reintentar
+ */
+public class GitHubApiException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final boolean rateLimited;
+
+    /**
+     * @param rateLimited true si la respuesta indica que se agotó el límite de peticiones
+     *                    (429, o 403 con X-RateLimit-Remaining: 0 o Retry-After)
+     */
+    public GitHubApiException(int statusCode, boolean rateLimited) {
+        super(message(statusCode, rateLimited));
+        this.statusCode = statusCode;
+        this.rateLimited = rateLimited;
+    }
+
+    private static String message(int statusCode, boolean rateLimited) {
+        if (!rateLimited && (statusCode == 401 || statusCode == 403)) {
+            return "GitHub rechazó la petición (código " + statusCode + "): el token no es válido, ha caducado o no tiene permiso sobre el repositorio";
+        }
+        return "Error en la API de GitHub. Código de respuesta: " + statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true si el error se debe al límite de peticiones de GitHub
+     */
+    public boolean isRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * @return true si GitHub rechazó el token o sus permisos (401, o 403 que no es por el límite de peticiones)
+     */
+    public boolean isAuthError() {
+        return !rateLimited && (statusCode == 401 || statusCode == 403);
+    }
+}
@@ -0,0 +1,184 @@
+package me.perro.dev.pluginloader;
+
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cliente de la API de GitHub Actions: construye las URLs a partir de la dirección base configurada,
+ * envía los validadores de la caché, actualiza el límite de peticiones y registra las métricas de cada petición.
+ * No depende de Bukkit, así que se puede usar contra un servidor de pruebas local.
+ */
+public class GitHubClient {
+    public static final String DEFAULT_API_URL = "https://api.github.com";
+
+    private final String apiUrl;
+    private final HttpTransport transport;
+    private final ResponseCache responseCache;
+    private final RateLimitTracker rateLimits;
+    private final Metrics metrics;
+
+    /**
+     * @param apiUrl Dirección base de la API (sin / al final se añade sola)
+     * @param responseCache Caché de respuestas, o null para no usarla
+     */
+    public GitHubClient(String apiUrl, HttpTransport transport, ResponseCache responseCache,
+                        RateLimitTracker rateLimits, Metrics metrics) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.transport = transport;
+        this.responseCache = responseCache;
+        this.rateLimits = rateLimits;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return El ID de la última ejecución correcta del workflow en la rama configurada, o null si no hay ninguna
+     */
+    public Long getLatestWorkflowRunId(RepositorySpec spec) throws Exception {
+        String url = apiUrl + "/repos/" + spec.getOwner() + "/" + spec.getRepo() + "/actions/workflows/" + spec.getWorkflow()
+                + "/runs?branch=" + spec.getBranch() + "&status=success&per_page=1";
+
+        return request(spec.getKey(), url, spec.getToken(), GitHubResponses::parseLatestRunId);
+    }
+
+    /**
+     * @return Los artefactos de una ejecución
+     */
+    public List<GitHubResponses.Artifact> getWorkflowRunArtifacts(RepositorySpec spec, long runId) throws Exception {
+        String url = apiUrl + "/repos/" + spec.getOwner() + "/" + spec.getRepo() + "/actions/runs/" + runId + "/artifacts";
+
+        return request(spec.getKey(), url, spec.getToken(), GitHubResponses::parseArtifacts);
+    }
+
+    /**
+     * Abre la descarga de un artefacto
+     * @return La respuesta, que hay que cerrar
+     * @throws IOException Si la respuesta no es 200
+     */
+    public HttpTransport.Response openDownload(String downloadUrl, String token) throws IOException {
+        HttpTransport.Response response = transport.get(downloadUrl, requestHeaders(token), false);
+        int responseCode = response.getStatusCode();
+
+        if (responseCode != 200) {
+            response.close();
+            throw new IOException("Error al descargar el archivo. Código de respuesta: " + responseCode);
+        }
+
+        return response;
+    }
+
+    /**
+     * Calcula la huella de un artefacto sin descargarlo, leyendo solo el directorio central del ZIP
+     * @return La huella, o null si no se pudo obtener (el servidor no admite peticiones Range, por ejemplo)
+     */
+    public String fetchArtifactFingerprint(String downloadUrl, String token) throws IOException {
+        return ArtifactFingerprint.fetch(transport, downloadUrl, requestHeaders(token));
+    }
+
+    /**
+     * @return Cabeceras comunes a todas las peticiones (autenticación); el mapa se puede modificar
+     */
+    public Map<String, String> requestHeaders(String token) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (token != null && !token.isEmpty()) {
+            headers.put("Authorization", "token " + token);
+        }
+        return headers;
+    }
+
+    // Lector de una respuesta de la API, que extrae solo lo que necesita
+    private interface ResponseParser<T> {
+        T parse(Reader reader) throws IOException, ParseException;
+    }
+
+    /**
+     * Hace una petición a la API de GitHub y lee la respuesta en flujo (UTF-8) con el lector indicado.
+     * Si la respuesta se guarda en caché, se escribe a disco a la vez que se lee.
+     */
+    private <T> T request(String repoKey, String url, String token, ResponseParser<T> parser) throws Exception {
+        Map<String, String> headers = requestHeaders(token);
+
+        // Enviar los validadores guardados para que GitHub pueda responder 304
+        ResponseCache.Entry cached = responseCache != null ? responseCache.get(url) : null;
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                headers.put("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                headers.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+
+        try (HttpTransport.Response response = transport.get(url, headers, true)) {
+            int responseCode = response.getStatusCode();
+            rateLimits.update(token, response);
+            metrics.observe("pluginloader_api_request_seconds", "Latencia de las peticiones a la API de GitHub",
+                    response.getLatencyMillis(), "repo", repoKey);
+            metrics.increment("pluginloader_api_requests_total", "Peticiones a la API de GitHub por código de respuesta",
+                    1, "repo", repoKey, "status", String.valueOf(responseCode));
+
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                Reader body = cached.openBody();
+                if (body != null) {
+                    try (Reader in = body) {
+                        T result = parser.parse(in);
+                        responseCache.recordHit();
+                        metrics.increment("pluginloader_api_cache_total", "Respuestas de la API servidas desde la caché (hit) o la red (miss)",
+                                1, "repo", repoKey, "result", "hit");
+                        return result;
+                    } catch (ParseException e) {
+                        // Cuerpo guardado dañado o incompleto: si se siguiera enviando su ETag, GitHub respondería siempre 304
+                    }
+                }
+            } else if (responseCode != 200) {
+                // GitHub responde 403 tanto por el límite de peticiones como por falta de permisos
+                boolean rateLimited = responseCode == 429 || (responseCode == 403
+                        && ("0".equals(response.getHeader("X-RateLimit-Remaining")) || response.getHeader("Retry-After") != null));
+                throw new GitHubApiException(responseCode, rateLimited);
+            } else {
+                Reader body = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                if (responseCache == null) {
+                    return parser.parse(body);
+                }
+
+                responseCache.recordMiss();
+                metrics.increment("pluginloader_api_cache_total", "Respuestas de la API servidas desde la caché (hit) o la red (miss)",
+                        1, "repo", repoKey, "result", "miss");
+                ResponseCache.PendingBody pending = responseCache.begin(url, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+                if (pending == null) {
+                    return parser.parse(body);
+                }
+
+                boolean completed = false;
+                try {
+                    Reader in = pending.tee(body);
+                    T result = parser.parse(in);
+                    // El lector puede haber parado antes del final: guardar también el resto
+                    char[] buffer = new char[8192];
+                    while (in.read(buffer) != -1) {
+                        // Solo se copia a la caché
+                    }
+                    pending.commit();
+                    completed = true;
+                    return result;
+                } finally {
+                    if (!completed) {
+                        pending.abort();
+                    }
+                }
+            }
+        }
+
+        // La caché está incompleta o dañada, repetir la petición sin validadores
+        responseCache.remove(url);
+        return request(repoKey, url, token, parser);
+    }
+}
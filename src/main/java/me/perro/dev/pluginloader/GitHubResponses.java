@@ -0,0 +1,205 @@
+package me.perro.dev.pluginloader;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura en flujo de las respuestas de la API de GitHub Actions. En lugar de construir el árbol JSON
+ * completo, solo se extraen los campos que se usan, así que la memoria no depende del tamaño de la respuesta.
+ */
+public final class GitHubResponses {
+
+    private GitHubResponses() {
+    }
+
+    /**
+     * Lee el ID de la primera ejecución de una respuesta de /actions/workflows/{workflow}/runs.
+     * Se deja de leer en cuanto se encuentra.
+     * @return El ID, o null si no hay ejecuciones
+     */
+    public static Long parseLatestRunId(Reader reader) throws IOException, ParseException {
+        LatestRunHandler handler = new LatestRunHandler();
+        new JSONParser().parse(reader, handler);
+        return handler.runId;
+    }
+
+    /**
+     * Lee los artefactos de una respuesta de /actions/runs/{id}/artifacts
+     */
+    public static List<Artifact> parseArtifacts(Reader reader) throws IOException, ParseException {
+        ArtifactsHandler handler = new ArtifactsHandler();
+        new JSONParser().parse(reader, handler);
+        return handler.artifacts;
+    }
+
+    /**
+     * Base de los handlers: sigue la ruta de claves hasta el valor actual.
+     * Los elementos de un array se representan con "[]".
+     */
+    private abstract static class PathHandler implements ContentHandler {
+        protected final List<String> path = new ArrayList<>();
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            path.add(key);
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            path.remove(path.size() - 1);
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            path.add("[]");
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            path.remove(path.size() - 1);
+            return true;
+        }
+
+        /**
+         * @return true si la ruta actual es exactamente la indicada
+         */
+        protected boolean at(String... expected) {
+            if (path.size() != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (!expected[i].equals(path.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // workflow_runs[0].id
+    private static class LatestRunHandler extends PathHandler {
+        Long runId;
+
+        @Override
+        public boolean primitive(Object value) {
+            if (at("workflow_runs", "[]", "id") && value instanceof Long) {
+                runId = (Long) value;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // artifacts[].{id, name, archive_download_url, size_in_bytes}, ignorando los objetos anidados (workflow_run)
+    private static class ArtifactsHandler extends PathHandler {
+        final List<Artifact> artifacts = new ArrayList<>();
+        private Artifact current;
+
+        @Override
+        public boolean startObject() {
+            if (at("artifacts", "[]")) {
+                current = new Artifact();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            if (current != null && at("artifacts", "[]")) {
+                if (current.name != null && current.downloadUrl != null && current.id != 0) {
+                    artifacts.add(current);
+                }
+                current = null;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (current == null || path.size() != 3 || !at("artifacts", "[]", path.get(2))) {
+                return true;
+            }
+            switch (path.get(2)) {
+                case "id":
+                    current.id = value instanceof Long ? (Long) value : 0;
+                    break;
+                case "name":
+                    current.name = value instanceof String ? (String) value : null;
+                    break;
+                case "archive_download_url":
+                    current.downloadUrl = value instanceof String ? (String) value : null;
+                    break;
+                case "size_in_bytes":
+                    current.size = value instanceof Long ? (Long) value : -1;
+                    break;
+                default:
+                    break;
+            }
+            return true;
+        }
+    }
+
+    // Clase interna con los datos de un artefacto que se usan
+    public static class Artifact {
+        private long id;
+        private String name;
+        private String downloadUrl;
+        private long size = -1;
+
+        Artifact() {
+        }
+
+        Artifact(long id, String name, String downloadUrl, long size) {
+            this.id = id;
+            this.name = name;
+            this.downloadUrl = downloadUrl;
+            this.size = size;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDownloadUrl() {
+            return downloadUrl;
+        }
+
+        /**
+         * @return Tamaño del ZIP en bytes, o -1 si no se conoce
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
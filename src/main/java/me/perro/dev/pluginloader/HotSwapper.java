@@ -0,0 +1,167 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.PluginIdentifiableCommand;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Descarga un sub-plugin del servidor sin reiniciarlo: lo deshabilita, elimina sus comandos,
+ * lo quita del PluginManager y cierra su classloader. Todo esto debe hacerse en el hilo principal.
+ */
+public class HotSwapper {
+    // Cada cuánto se mira si el classloader anterior se ha liberado (30 segundos), y cuántas veces
+    private static final long VERIFY_INTERVAL_TICKS = 600L;
+    private static final int VERIFY_ATTEMPTS = 10;
+
+    private final Plugin owner;
+    private final Logger logger;
+
+    public HotSwapper(Plugin owner, Logger logger) {
+        this.owner = owner;
+        this.logger = logger;
+    }
+
+    /**
+     * Deshabilita y descarga un plugin.
+     * Al deshabilitarlo, Bukkit ya cancela sus tareas, quita sus listeners y servicios y
+     * borra sus clases de la caché global; aquí se hace el resto.
+     * @param plugin Plugin a descargar
+     * @return Referencia débil a su classloader, para comprobar después si se ha liberado
+     */
+    public WeakReference<ClassLoader> unload(Plugin plugin) {
+        PluginManager pluginManager = Bukkit.getPluginManager();
+        String name = plugin.getName();
+
+        pluginManager.disablePlugin(plugin);
+
+        // Comandos registrados por el plugin
+        try {
+            SimpleCommandMap commandMap = getCommandMap(pluginManager);
+            Map<String, Command> knownCommands = getKnownCommands(commandMap);
+            Iterator<Map.Entry<String, Command>> iterator = knownCommands.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Command command = iterator.next().getValue();
+                if (command instanceof PluginIdentifiableCommand && ((PluginIdentifiableCommand) command).getPlugin() == plugin) {
+                    command.unregister(commandMap);
+                    iterator.remove();
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "No se pudieron eliminar los comandos de " + name, e);
+        }
+
+        // Quitarlo de la lista de plugins para que se pueda volver a cargar con el mismo nombre
+        try {
+            Field pluginsField = pluginManager.getClass().getDeclaredField("plugins");
+            pluginsField.setAccessible(true);
+            ((List<?>) pluginsField.get(pluginManager)).remove(plugin);
+
+            Field lookupNamesField = pluginManager.getClass().getDeclaredField("lookupNames");
+            lookupNamesField.setAccessible(true);
+            Map<?, ?> lookupNames = (Map<?, ?>) lookupNamesField.get(pluginManager);
+            lookupNames.values().removeIf(value -> value == plugin);
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "No se pudo quitar " + name + " del PluginManager", e);
+        }
+
+        // Cerrar el classloader para liberar el JAR
+        ClassLoader classLoader = plugin.getClass().getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            try {
+                ((URLClassLoader) classLoader).close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "No se pudo cerrar el classloader de " + name, e);
+            }
+        }
+
+        logger.info("Sub-plugin descargado: " + name);
+        return new WeakReference<>(classLoader);
+    }
+
+    /**
+     * Envía a los jugadores la lista de comandos actualizada (1.13+), si el servidor lo permite
+     */
+    public void syncCommands() {
+        try {
+            Method syncCommands = Bukkit.getServer().getClass().getDeclaredMethod("syncCommands");
+            syncCommands.setAccessible(true);
+            syncCommands.invoke(Bukkit.getServer());
+        } catch (ReflectiveOperationException e) {
+            logger.fine("El servidor no permite sincronizar comandos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Comprueba durante unos minutos si el classloader del plugin descargado se ha liberado, sin forzar el GC:
+     * un System.gc() pararía el servidor entero. Si sigue en memoria después de que todos los recolectores
+     * hayan pasado, algo mantiene referencias a él (hilos propios, campos estáticos de otros plugins...).
+     */
+    public void verifyCollected(String name, WeakReference<ClassLoader> reference) {
+        verifyCollected(name, reference, collectionCounts(), 1);
+    }
+
+    private void verifyCollected(String name, WeakReference<ClassLoader> reference, long[] countsAtUnload, int attempt) {
+        Bukkit.getScheduler().runTaskLaterAsynchronously(owner, () -> {
+            if (reference.get() == null) {
+                logger.info("El classloader anterior de " + name + " se ha liberado correctamente.");
+                return;
+            }
+            if (attempt < VERIFY_ATTEMPTS) {
+                verifyCollected(name, reference, countsAtUnload, attempt + 1);
+                return;
+            }
+
+            // Un classloader suele estar en la generación vieja: sin una recolección de cada tipo no se puede saber
+            long[] counts = collectionCounts();
+            boolean allCollected = counts.length == countsAtUnload.length;
+            for (int i = 0; allCollected && i < counts.length; i++) {
+                allCollected = counts[i] > countsAtUnload[i];
+            }
+            if (allCollected) {
+                logger.warning("El classloader anterior de " + name + " sigue en memoria tras la recarga. Posible fuga de memoria.");
+            } else {
+                logger.info("No ha habido una recolección completa desde la recarga de " + name
+                        + ". No se puede saber todavía si su classloader anterior se ha liberado.");
+            }
+        }, VERIFY_INTERVAL_TICKS);
+    }
+
+    // Número de recolecciones de cada recolector de la JVM hasta ahora
+    private static long[] collectionCounts() {
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long[] counts = new long[collectors.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = collectors.get(i).getCollectionCount();
+        }
+        return counts;
+    }
+
+    static SimpleCommandMap getCommandMap(PluginManager pluginManager) throws ReflectiveOperationException {
+        Field commandMapField = pluginManager.getClass().getDeclaredField("commandMap");
+        commandMapField.setAccessible(true);
+        return (SimpleCommandMap) commandMapField.get(pluginManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Command> getKnownCommands(SimpleCommandMap commandMap) throws ReflectiveOperationException {
+        Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
+        knownCommandsField.setAccessible(true);
+        return (Map<String, Command>) knownCommandsField.get(commandMap);
+    }
+}
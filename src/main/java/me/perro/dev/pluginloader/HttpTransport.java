@@ -0,0 +1,59 @@
+package me.perro.dev.pluginloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Transporte HTTP usado para las peticiones a la API de GitHub y las descargas de artefactos.
+ * Permite sustituir la implementación (por ejemplo, para pruebas o para otro cliente HTTP).
+ */
+public interface HttpTransport {
+
+    /**
+     * Hace una petición GET
+     * @param url URL a pedir
+     * @param headers Cabeceras de la petición
+     * @param compressed Si es true, se acepta la respuesta comprimida con gzip (no usar con Range ni con binarios)
+     * @return La respuesta, que se debe cerrar siempre para poder reutilizar la conexión
+     */
+    Response get(String url, Map<String, String> headers, boolean compressed) throws IOException;
+
+    /**
+     * @return Número de peticiones hechas
+     */
+    long getRequestCount();
+
+    /**
+     * @return Latencia media hasta recibir las cabeceras de la respuesta, en milisegundos
+     */
+    double getAverageLatencyMillis();
+
+    /**
+     * Respuesta a una petición. Al cerrarla se consume lo que quede del cuerpo (hasta un límite)
+     * para que la conexión vuelva al pool de keep-alive.
+     */
+    interface Response extends Closeable {
+
+        int getStatusCode();
+
+        /**
+         * @return El valor de la cabecera, o null si no está
+         */
+        String getHeader(String name);
+
+        /**
+         * @return El cuerpo de la respuesta, ya descomprimido
+         */
+        InputStream getBody() throws IOException;
+
+        /**
+         * @return Tiempo hasta recibir las cabeceras de la respuesta, en milisegundos
+         */
+        long getLatencyMillis();
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,222 @@
+package me.perro.dev.pluginloader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extrae los JARs de un artefacto ZIP, ya sea leyéndolo como flujo (sin necesidad de tenerlo en disco)
+ * o desde un archivo. El SHA-256, el CRC32 y el tamaño de cada JAR se calculan mientras se escriben.
+ */
+public class JarExtractor {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // Regulador de la velocidad de escritura, o null para extraer a toda velocidad
+    private final WorkGovernor governor;
+
+    public JarExtractor() {
+        this(null);
+    }
+
+    public JarExtractor(WorkGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Extrae todos los JARs del ZIP a la carpeta de destino.
+     * Si algo falla a mitad, se eliminan los JARs ya extraídos para no dejar instalaciones a medias.
+     * @param zipStream Flujo con el contenido del ZIP (por ejemplo, directamente de la conexión HTTP)
+     * @param destFolder Carpeta donde dejar los JARs
+     * @return Los JARs extraídos, en el orden en que aparecen en el ZIP
+     */
+    public List<ExtractedJar> extract(InputStream zipStream, File destFolder) throws IOException {
+        List<ExtractedJar> extracted = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(zipStream, BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                // Solo procesar archivos JAR
+                if (isJar(entry)) {
+                    extracted.add(write(zip, destFolder, new File(entry.getName()).getName(), buffer));
+                }
+            }
+        } catch (IOException e) {
+            deleteAll(extracted);
+            throw e;
+        }
+
+        return extracted;
+    }
+
+    /**
+     * Extrae todos los JARs de un ZIP que ya está en disco. A diferencia de la lectura en flujo,
+     * usa el directorio central del ZIP, por lo que admite cualquier ZIP válido.
+     * @param zipFile ZIP en disco
+     * @param destFolder Carpeta donde dejar los JARs
+     * @return Los JARs extraídos, en el orden en que aparecen en el ZIP
+     */
+    public List<ExtractedJar> extract(File zipFile, File destFolder) throws IOException {
+        List<ExtractedJar> extracted = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (isJar(entry)) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        extracted.add(write(in, destFolder, new File(entry.getName()).getName(), buffer));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            deleteAll(extracted);
+            throw e;
+        }
+
+        return extracted;
+    }
+
+    static boolean isJar(ZipEntry entry) {
+        return !entry.isDirectory() && entry.getName().toLowerCase().endsWith(".jar");
+    }
+
+    private static void deleteAll(List<ExtractedJar> extracted) {
+        for (ExtractedJar jar : extracted) {
+            jar.getFile().delete();
+        }
+    }
+
+    /**
+     * Escribe un JAR a la carpeta de destino calculando su SHA-256, CRC32 y tamaño mientras se copia.
+     * Se escribe primero a un .part y se renombra al terminar.
+     */
+    private ExtractedJar write(InputStream in, File destFolder, String fileName, byte[] buffer) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        File tempFile = new File(destFolder, fileName + ".part");
+        MessageDigest digest = newSha256();
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+                crc.update(buffer, 0, bytesRead);
+                byteBuffer.clear();
+                byteBuffer.limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+                size += bytesRead;
+                if (governor != null) {
+                    governor.awaitHealthy();
+                    governor.paceExtraction(bytesRead);
+                }
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        File outFile = uniqueFile(destFolder, fileName);
+        Files.move(tempFile.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new ExtractedJar(outFile, fileName, toHex(digest.digest()), crc.getValue(), size);
+    }
+
+    /**
+     * Devuelve un archivo en la carpeta con el nombre indicado, añadiendo una marca de tiempo
+     * si ya existe otro con el mismo nombre
+     */
+    public static File uniqueFile(File folder, String fileName) {
+        File outFile = new File(folder, fileName);
+        if (outFile.exists()) {
+            int dot = fileName.lastIndexOf('.');
+            String baseName = dot >= 0 ? fileName.substring(0, dot) : fileName;
+            String extension = dot >= 0 ? fileName.substring(dot) : "";
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd-HHmmss");
+            String timestamp = sdf.format(new Date());
+            outFile = new File(folder, baseName + "-" + timestamp + extension);
+        }
+        return outFile;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // Clase interna con el resultado de extraer un JAR
+    public static class ExtractedJar {
+        private final File file;
+        private final String name;
+        private final String sha256;
+        private final long crc32;
+        private final long size;
+
+        public ExtractedJar(File file, String name, String sha256, long crc32, long size) {
+            this.file = file;
+            this.name = name;
+            this.sha256 = sha256;
+            this.crc32 = crc32;
+            this.size = size;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Nombre original del JAR dentro del artefacto
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * CRC32 del contenido, el mismo que figura en el directorio central del ZIP
+         */
+        public long getCrc32() {
+            return crc32;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
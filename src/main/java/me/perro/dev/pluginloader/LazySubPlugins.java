@@ -0,0 +1,188 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sub-plugins que no se cargan al arrancar. De cada uno solo se registran sus comandos como comandos vacíos;
+ * al usar uno de ellos (o con /pluginloader activate) se carga y habilita el plugin real y se repite el comando.
+ * Todo debe hacerse en el hilo principal, como los comandos.
+ */
+public class LazySubPlugins {
+    private final Logger logger;
+    private final Activator activator;
+    // Sub-plugins en espera por su nombre en minúsculas
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Carga y habilita un sub-plugin en espera
+     */
+    public interface Activator {
+        /**
+         * @return El plugin habilitado, o null si no se pudo cargar
+         */
+        Plugin activate(SubPluginDescriptor descriptor) throws Exception;
+    }
+
+    public LazySubPlugins(Logger logger, Activator activator) {
+        this.logger = logger;
+        this.activator = activator;
+    }
+
+    /**
+     * Deja un sub-plugin en espera y registra sus comandos vacíos. Si ya estaba en espera, se sustituye su descriptor.
+     */
+    public void register(SubPluginDescriptor descriptor) {
+        Pending previous = pending.remove(key(descriptor.getName()));
+        if (previous != null) {
+            unregisterStubs(previous);
+        }
+
+        Pending entry = new Pending(descriptor);
+        try {
+            SimpleCommandMap commandMap = HotSwapper.getCommandMap(Bukkit.getPluginManager());
+            for (Map.Entry<String, List<String>> command : descriptor.getCommands().entrySet()) {
+                StubCommand stub = new StubCommand(command.getKey(), command.getValue(), descriptor.getName(),
+                        descriptor.getCommandPermission(command.getKey()));
+                commandMap.register(descriptor.getName().toLowerCase(), stub);
+                entry.stubs.add(stub);
+            }
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "No se pudieron registrar los comandos de " + descriptor.getName()
+                    + ". Solo se podrá activar con /pluginloader activate.", e);
+        }
+        pending.put(key(descriptor.getName()), entry);
+    }
+
+    /**
+     * @return true si el sub-plugin está en espera
+     */
+    public boolean isPending(String name) {
+        return pending.containsKey(key(name));
+    }
+
+    /**
+     * @return Nombres de los sub-plugins en espera
+     */
+    public Set<String> getPendingNames() {
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (Pending entry : pending.values()) {
+            names.add(entry.descriptor.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Carga y habilita un sub-plugin en espera, después de sus dependencias que también lo estén
+     * @return El plugin habilitado, o null si no estaba en espera o no se pudo cargar
+     */
+    public Plugin activate(String name) {
+        Pending entry = pending.remove(key(name));
+        if (entry == null) {
+            return null;
+        }
+        // Los comandos reales del plugin se registran al habilitarlo y no deben encontrarse con los vacíos
+        unregisterStubs(entry);
+
+        SubPluginDescriptor descriptor = entry.descriptor;
+        List<String> dependencies = new ArrayList<>(descriptor.getDepend());
+        dependencies.addAll(descriptor.getSoftDepend());
+        for (String dependency : dependencies) {
+            if (isPending(dependency) && activate(dependency) == null && descriptor.getDepend().contains(dependency)) {
+                logger.severe("No se puede activar " + descriptor.getName() + ": falla su dependencia " + dependency + ".");
+                return null;
+            }
+        }
+
+        try {
+            Plugin plugin = activator.activate(descriptor);
+            if (plugin == null) {
+                logger.warning("No se pudo activar el sub-plugin " + descriptor.getName() + ".");
+            }
+            return plugin;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error al activar el sub-plugin " + descriptor.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Quita un sub-plugin de la espera sin cargarlo, p. ej. si su JAR ya no existe
+     */
+    public void remove(String name) {
+        Pending entry = pending.remove(key(name));
+        if (entry != null) {
+            unregisterStubs(entry);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void unregisterStubs(Pending entry) {
+        if (entry.stubs.isEmpty()) {
+            return;
+        }
+        try {
+            SimpleCommandMap commandMap = HotSwapper.getCommandMap(Bukkit.getPluginManager());
+            Map<String, Command> knownCommands = HotSwapper.getKnownCommands(commandMap);
+            for (StubCommand stub : entry.stubs) {
+                stub.unregister(commandMap);
+                knownCommands.values().removeIf(command -> command == stub);
+            }
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "No se pudieron eliminar los comandos temporales de " + entry.descriptor.getName(), e);
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase();
+    }
+
+    // Clase interna con un sub-plugin en espera y sus comandos vacíos
+    private static class Pending {
+        final SubPluginDescriptor descriptor;
+        final List<StubCommand> stubs = new ArrayList<>();
+
+        Pending(SubPluginDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+
+    // Clase interna con un comando de un sub-plugin en espera: activa el plugin y repite el comando.
+    // Lleva el mismo permiso que el comando real, para que no cualquiera pueda hacer que se cargue el plugin.
+    private class StubCommand extends Command {
+        private final String pluginName;
+
+        StubCommand(String name, List<String> aliases, String pluginName, String permission) {
+            super(name, "Activa " + pluginName, "/" + name, aliases);
+            this.pluginName = pluginName;
+            setPermission(permission);
+        }
+
+        @Override
+        public boolean execute(CommandSender sender, String label, String[] args) {
+            if (!testPermission(sender)) {
+                return true;
+            }
+            if (activate(pluginName) == null) {
+                sender.sendMessage("§cNo se pudo activar " + pluginName + ". Revisa la consola para más detalles.");
+                return true;
+            }
+            return Bukkit.dispatchCommand(sender, args.length == 0 ? label : label + " " + String.join(" ", args));
+        }
+    }
+}
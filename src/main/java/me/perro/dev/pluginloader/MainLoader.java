@@ -1,51 +1,117 @@
 package me.perro.dev.pluginloader;
 
 import org.bukkit.Bukkit;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.InvalidDescriptionException;
 import org.bukkit.plugin.InvalidPluginException;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
 import java.io.*;
+import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.zip.ZipException;
 
 public class MainLoader extends JavaPlugin {
 
     private File subPluginsFolder;
     private File downloadsFolder;
     private final String USER_AGENT = "PluginLoader/1.0";
+    private static final long JOURNAL_INTERVAL = 4L * 1024 * 1024;
+    // Cada cuántos ticks se revisa qué repositorios toca comprobar (30 segundos)
+    private static final long SCHEDULER_TICK = 30 * 20;
     private VersionTracker versionTracker;
+    private ResponseCache responseCache;
+    private HttpTransport httpTransport;
+    private final Metrics metrics = new Metrics();
+    private MetricsServer metricsServer;
+    private WebhookServer webhookServer;
+    // Regula la velocidad de descargas y extracciones según la carga del servidor
+    private final WorkGovernor workGovernor = new WorkGovernor();
+    private final JarExtractor jarExtractor = new JarExtractor(workGovernor);
+    private BukkitTask governorTask;
+    private ArtifactStore artifactStore;
+    private StagingArea stagingArea;
+    // Comprobaciones y artefactos compartidos con otras instancias (shared-cache); null si está desactivado
+    private SharedCache sharedCache;
+    // Ejecuciones cuyo artefacto no pasó la validación: repositorio -> ID de ejecución
+    private final Map<String, Long> rejectedRuns = new ConcurrentHashMap<>();
+    private SubPluginScanner subPluginScanner;
+    private DescriptorIndex descriptorIndex;
+    private HotSwapper hotSwapper;
+    // Bibliotecas compartidas entre sub-plugins (sub-plugins.shared-libraries); null si está desactivado
+    private SharedLibraries sharedLibraries;
+    private SharedLibraryClassLoader sharedLibraryLoader;
+    // Sub-plugins que se cargan al usar uno de sus comandos (sub-plugins.lazy)
+    private LazySubPlugins lazySubPlugins;
+    // Nombres de los sub-plugins cargados por este loader
+    private final Set<String> loadedSubPlugins = ConcurrentHashMap.newKeySet();
     private BukkitTask updateCheckerTask;
-    private final Map<String, UpdateInfo> pendingUpdates = new HashMap<>();
+    private final UpdateState updateState = new UpdateState();
+    private RateLimitTracker rateLimits;
+    private GitHubClient gitHubClient;
+    // Configuración de los repositorios; se sustituye entera al recargar
+    private volatile Map<String, RepositorySpec> repositories = Collections.emptyMap();
+    private UpdateScheduler updateScheduler;
+    private ExecutorService checkExecutor;
+    private ScheduledExecutorService checkWatchdog;
+    // Se activa justo antes de cargar los sub-plugins; a partir de ahí las actualizaciones se preparan para el reinicio
+    private final Object subPluginsLoadLock = new Object();
+    private boolean subPluginsLoaded;
     public class UpdateInfo {
         String owner;
         String repo;
         String artifactName;
+        // Identidad real del repositorio, para la caché compartida
+        String identity;
         String token;
         long artifactId;
         long runId;
         String downloadUrl;
         String name;
         String version;
+        long size;
+        boolean autoUpdate;
     }
 
     @Override
     public void onLoad() {
         // Guardar configuración por defecto
         saveDefaultConfig();
+        configureGovernor();
 
         // Crear carpetas necesarias
         subPluginsFolder = new File(getDataFolder(), "sub-plugins");
@@ -62,32 +128,104 @@ public class MainLoader extends JavaPlugin {
 
         // Inicializar el logger de versiones
         versionTracker = new VersionTracker(getDataFolder(), getLogger());
+        versionTracker.setHistoryLimit(getConfig().getInt("github.store-history", 5));
 
-        // Descargar plugins desde GitHub si está habilitado
+        // Almacén de JARs por contenido, con historial para rollback
+        artifactStore = new ArtifactStore(getDataFolder(), getLogger());
+
+        // Aplicar las actualizaciones preparadas antes de que se cargue ningún sub-plugin
+        stagingArea = new StagingArea(getDataFolder(), getLogger());
+        int promoted = stagingArea.promoteAll(subPluginsFolder, versionTracker);
+        if (promoted > 0) {
+            getLogger().info("Aplicadas " + promoted + " actualizaciones preparadas.");
+        }
+
+        if (getConfig().getBoolean("shared-cache.enabled", false)) {
+            setUpSharedCache();
+        }
+
+        // Conexiones HTTP reutilizables (keep-alive) con límites de tiempo
+        httpTransport = new UrlConnectionTransport(USER_AGENT,
+                (int) TimeUnit.SECONDS.toMillis(getConfig().getInt("github.http.connect-timeout", 10)),
+                (int) TimeUnit.SECONDS.toMillis(getConfig().getInt("github.http.read-timeout", 30)));
+
+        // Caché de respuestas de la API con peticiones condicionales (ETag / Last-Modified)
+        if (getConfig().getBoolean("github.api-cache", true)) {
+            responseCache = new ResponseCache(getDataFolder(), getLogger());
+        }
+
+        // Executor dedicado para las comprobaciones de repositorios en paralelo
+        int checkConcurrency = Math.max(1, getConfig().getInt("github.check-concurrency", 8));
+        checkExecutor = Executors.newFixedThreadPool(checkConcurrency, newThreadFactory("PluginLoader-Check"));
+        checkWatchdog = Executors.newSingleThreadScheduledExecutor(newThreadFactory("PluginLoader-Check-Timeout"));
+
+        // Límite de peticiones de la API y programación adaptativa de comprobaciones por repositorio
+        rateLimits = new RateLimitTracker(getConfig().getInt("github.scheduler.rate-limit-reserve", 100));
+        gitHubClient = new GitHubClient(getConfig().getString("github.api-url", GitHubClient.DEFAULT_API_URL),
+                httpTransport, responseCache, rateLimits, metrics);
+        updateScheduler = new UpdateScheduler(getLogger());
+        loadRepositories();
+
+        // Descargar plugins desde GitHub si está habilitado, sin retrasar el arranque más de lo configurado
         if (getConfig().getBoolean("github.enabled", false)) {
             boolean autoUpdateStartup = getConfig().getBoolean("github.auto-update-on-startup", false);
-            checkForUpdates(autoUpdateStartup);
+            runStartupCheck(autoUpdateStartup, getConfig().getLong("github.startup-budget", 10));
         }
 
         // Cargar los sub-plugins
+        subPluginScanner = new SubPluginScanner(getLogger());
+        descriptorIndex = new DescriptorIndex(getDataFolder(), getLogger());
+        synchronized (subPluginsLoadLock) {
+            subPluginsLoaded = true;
+        }
         loadSubPlugins();
     }
 
     public void onEnable() {
         getLogger().info("PluginLoader ha sido habilitado con éxito.");
+        hotSwapper = new HotSwapper(this, getLogger());
+
+        // Medir la duración de cada tick para pausar el trabajo en segundo plano cuando el servidor va cargado
+        governorTask = Bukkit.getScheduler().runTaskTimer(this, workGovernor::onTick, 1L, 1L);
+
+        // Endpoint opcional de métricas para Prometheus
+        if (getConfig().getBoolean("metrics.http-enabled", false)) {
+            metricsServer = new MetricsServer(metrics, getLogger());
+            try {
+                metricsServer.start(getConfig().getString("metrics.bind", "127.0.0.1"), getConfig().getInt("metrics.port", 9464));
+            } catch (IOException e) {
+                getLogger().warning("No se pudo iniciar el servidor de métricas: " + e.getMessage());
+                metricsServer = null;
+            }
+        }
+
+        // Webhook opcional de GitHub: las actualizaciones llegan al terminar el workflow, sin esperar a la siguiente comprobación
+        if (getConfig().getBoolean("github.webhook.enabled", false)) {
+            String secret = getConfig().getString("github.webhook.secret", "");
+            if (secret == null || secret.isEmpty()) {
+                getLogger().warning("El webhook de GitHub necesita un secreto (github.webhook.secret). No se iniciará.");
+            } else {
+                webhookServer = new WebhookServer(secret, this::onWorkflowRun, metrics, getLogger());
+                try {
+                    webhookServer.start(getConfig().getString("github.webhook.bind", "0.0.0.0"), getConfig().getInt("github.webhook.port", 8765),
+                            getConfig().getString("github.webhook.path", "/github-webhook"));
+                } catch (IOException e) {
+                    getLogger().warning("No se pudo iniciar el webhook de GitHub: " + e.getMessage());
+                    webhookServer = null;
+                }
+            }
+        }
 
         UpdateCommand updateCommand = new UpdateCommand(this);
         getCommand("pluginloader").setExecutor(updateCommand);
         getCommand("pluginloader").setTabCompleter(updateCommand);
 
         if (getConfig().getBoolean("github.auto-check", true)) {
-            int checkInterval = getConfig().getInt("github.check-interval", 60) * 60 * 20;
-            updateCheckerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
-                getLogger().info("Comprobando actualizaciones programadas...");
-                checkForUpdates(false); // Solo comprueba, no descarga automáticamente
-            }, checkInterval, checkInterval);
+            // Cada repositorio se comprueba cuando le toca; aquí solo se revisa periódicamente a cuáles les toca
+            updateCheckerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                    this::runScheduledChecks, SCHEDULER_TICK, SCHEDULER_TICK);
             getLogger().info("Auto-Checker de actualizaciones programado cada " +
-                    getConfig().getInt("github.check-interval", 60) + " minutos.");
+                    getConfig().getInt("github.check-interval", 60) + " minutos (adaptado por repositorio).");
         }
     }
 
@@ -95,137 +233,600 @@ public class MainLoader extends JavaPlugin {
     public void onDisable() {
         // Guardar el archivo de versiones
         if (versionTracker != null) {
-            versionTracker.saveVersionFile();
+            versionTracker.close();
         }
         if (updateCheckerTask != null) {
             updateCheckerTask.cancel();
         }
+        if (governorTask != null) {
+            governorTask.cancel();
+        }
+        workGovernor.stopTicking();
+        if (checkExecutor != null) {
+            checkExecutor.shutdownNow();
+        }
+        if (checkWatchdog != null) {
+            checkWatchdog.shutdownNow();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (webhookServer != null) {
+            webhookServer.stop();
+        }
+        if (sharedCache != null) {
+            sharedCache.close();
+        }
         getLogger().info("PluginLoader ha sido deshabilitado.");
     }
 
+    private void setUpSharedCache() {
+        String instanceId = getConfig().getString("shared-cache.instance-id", "");
+        if (instanceId.isEmpty()) {
+            try {
+                instanceId = InetAddress.getLocalHost().getHostName() + "-" + Bukkit.getPort();
+            } catch (UnknownHostException e) {
+                instanceId = UUID.randomUUID().toString();
+            }
+        }
+        // Una ruta vacía o relativa apuntaría a la carpeta del servidor, que no comparte ninguna otra instancia
+        String path = getConfig().getString("shared-cache.directory", "");
+        File directory = new File(path);
+        if (path.trim().isEmpty() || !directory.isAbsolute()) {
+            getLogger().warning("shared-cache.directory debe ser una ruta absoluta a una carpeta común a todas las instancias"
+                    + " (valor actual: \"" + path + "\"). Esta instancia comprobará y descargará por su cuenta.");
+            sharedCache = null;
+            return;
+        }
+        try {
+            sharedCache = new SharedCache(directory, instanceId,
+                    TimeUnit.SECONDS.toMillis(Math.max(10, getConfig().getLong("shared-cache.lease-seconds", 120))),
+                    TimeUnit.SECONDS.toMillis(Math.max(0, getConfig().getLong("shared-cache.result-ttl", 300))), getLogger());
+            int removed = sharedCache.cleanUp(TimeUnit.DAYS.toMillis(Math.max(1, getConfig().getLong("shared-cache.max-age-days", 7))));
+            getLogger().info("Caché compartida en " + directory.getAbsolutePath() + " (instancia " + instanceId + ")"
+                    + (removed > 0 ? ", " + removed + " archivos antiguos eliminados." : "."));
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "No se pudo usar la caché compartida en " + directory.getAbsolutePath()
+                    + ". Esta instancia comprobará y descargará por su cuenta.", e);
+            sharedCache = null;
+        }
+    }
+
+    private void configureGovernor() {
+        workGovernor.configure(getConfig().getLong("governor.download-limit-kbps", 0) * 1024,
+                getConfig().getLong("governor.extract-limit-kbps", 0) * 1024,
+                getConfig().getDouble("governor.pause-above-mspt", 60),
+                TimeUnit.SECONDS.toMillis(getConfig().getLong("governor.max-pause", 20)));
+    }
+
+    private void loadRepositories() {
+        repositories = RepositorySpec.loadAll(getConfig().getConfigurationSection("github.repositories"), getLogger());
+        // Con el webhook activo, las comprobaciones periódicas solo cubren los avisos perdidos
+        long fallback = getConfig().getBoolean("github.webhook.enabled", false)
+                ? minutes(getConfig().getLong("github.webhook.fallback-interval", 360)) : 0;
+        updateScheduler.configure(
+                Math.max(fallback, minutes(getConfig().getLong("github.check-interval", 60))),
+                Math.max(fallback, minutes(getConfig().getLong("github.scheduler.min-interval", 15))),
+                Math.max(fallback, minutes(getConfig().getLong("github.scheduler.max-interval", 360))),
+                Math.max(fallback, minutes(getConfig().getLong("github.scheduler.max-backoff", 1440))),
+                getConfig().getInt("github.scheduler.failure-threshold", 5));
+    }
+
+    /**
+     * Vuelve a leer config.yml y sustituye la configuración de los repositorios (y del programador) de una vez.
+     * Las comprobaciones en curso terminan con la configuración con la que empezaron.
+     * @return Número de repositorios válidos
+     */
+    public int reloadRepositories() {
+        reloadConfig();
+        configureGovernor();
+        loadRepositories();
+        getLogger().info("Configuración recargada: " + repositories.size() + " repositorios.");
+        return repositories.size();
+    }
+
     /**
-     * Comprueba si hay actualizaciones disponibles para todos los repositorios configurados
+     * @return Resumen de las métricas para /pluginloader stats
+     */
+    public List<String> getStatsSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Peticiones HTTP: %d, latencia media: %.1f ms",
+                httpTransport.getRequestCount(), httpTransport.getAverageLatencyMillis()));
+        if (responseCache != null) {
+            lines.add("Caché de la API: " + responseCache.getHits() + " aciertos, " + responseCache.getMisses() + " fallos");
+        }
+        lines.add("Actualizaciones preparadas para el próximo reinicio: " + stagingArea.size());
+        lines.addAll(workGovernor.summary());
+        if (sharedCache != null) {
+            lines.add(sharedCache.summary());
+        }
+        if (lazySubPlugins != null && lazySubPlugins.size() > 0) {
+            lines.add("Sub-plugins en espera (lazy): " + String.join(", ", lazySubPlugins.getPendingNames()));
+        }
+        if (sharedLibraryLoader != null) {
+            lines.add("Bibliotecas compartidas: " + sharedLibraries.getShared().size() + ", clases cargadas una sola vez: "
+                    + sharedLibraryLoader.getDefinedClasses() + ", conflictos de versiones: " + sharedLibraries.getConflicts().size());
+        }
+        lines.addAll(metrics.summary());
+        return lines;
+    }
+
+    /**
+     * @return Las claves de los repositorios configurados
+     */
+    public Set<String> getRepositoryKeys() {
+        return repositories.keySet();
+    }
+
+    private static long minutes(long minutes) {
+        return TimeUnit.MINUTES.toMillis(Math.max(1, minutes));
+    }
+
+    private static ThreadFactory newThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Comprueba las actualizaciones al arrancar en un hilo propio y espera como mucho el tiempo indicado.
+     * Lo que se instale dentro de ese tiempo se carga ya en este arranque; lo que llegue después se prepara
+     * para el siguiente (o se recarga en caliente si está activado), así que GitHub no puede retrasar el arranque.
+     * @param budgetSeconds Segundos que se espera a la comprobación y las descargas; negativo para esperar siempre
+     */
+    private void runStartupCheck(boolean autoDownload, long budgetSeconds) {
+        ExecutorService startupExecutor = Executors.newSingleThreadExecutor(newThreadFactory("PluginLoader-Startup"));
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<Map<String, UpdateInfo>> check = checkForUpdates(autoDownload, startupExecutor);
+        startupExecutor.shutdown();
+
+        try {
+            if (budgetSeconds < 0) {
+                check.get();
+            } else {
+                check.get(budgetSeconds, TimeUnit.SECONDS);
+            }
+            getLogger().info("Comprobación de arranque completada en " + (System.currentTimeMillis() - startTime) + " ms.");
+        } catch (TimeoutException e) {
+            getLogger().warning("La comprobación de actualizaciones no terminó en " + budgetSeconds + " segundos. Se cargan las versiones instaladas;"
+                    + " lo que llegue después se aplicará en el próximo reinicio.");
+        } catch (ExecutionException | CancellationException e) {
+            // Ya se ha informado en la propia comprobación
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.observe("pluginloader_startup_wait_seconds", "Tiempo que el arranque esperó a la comprobación de actualizaciones",
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Comprueba si hay actualizaciones disponibles para todos los repositorios configurados.
+     * Si ya hay una comprobación en curso (programada o pedida por un administrador), se espera
+     * a su resultado en lugar de repetir las peticiones a la API.
      * @param autoDownload Si es true, descarga automáticamente las actualizaciones si están configuradas para ello
-     * @return Un mapa con las actualizaciones pendientes
+     * @return El resultado de la comprobación: una copia inmutable de las actualizaciones pendientes
      */
-    public Map<String, UpdateInfo> checkForUpdates(boolean autoDownload) {
-        getLogger().info("Comprobando actualizaciones desde GitHub...");
-        pendingUpdates.clear();
+    public CompletableFuture<Map<String, UpdateInfo>> checkForUpdates(boolean autoDownload) {
         boolean isSync = Bukkit.getServer().isPrimaryThread();
+        Executor executor = isSync && this.isEnabled()
+                ? task -> Bukkit.getScheduler().runTaskAsynchronously(this, task)
+                : Runnable::run;
+        return checkForUpdates(autoDownload, executor);
+    }
 
-        // Realizar la comprobación de manera asíncrona
-        Runnable checkTask = () -> {
-            for (String repoKey : getConfig().getConfigurationSection("github.repositories").getKeys(false)) {
-                String repoPath = "github.repositories." + repoKey + ".";
-                String owner = getConfig().getString(repoPath + "owner");
-                String repo = getConfig().getString(repoPath + "repo");
-                String artifactName = getConfig().getString(repoPath + "artifact", "*.jar");
-                String token = getConfig().getString(repoPath + "token", "");
-                String branch = getConfig().getString(repoPath + "branch", "main");
-                String workflow = getConfig().getString(repoPath + "workflow");
-                Boolean autoupdate = getConfig().getBoolean(repoPath + "auto-update");
-
-                if (owner == null || repo == null || workflow == null) {
-                    getLogger().warning("Configuración incompleta para el repositorio: " + repoKey);
-                    continue;
+    private CompletableFuture<Map<String, UpdateInfo>> checkForUpdates(boolean autoDownload, Executor executor) {
+        if (updateState.isChecking()) {
+            getLogger().info("Ya hay una comprobación de actualizaciones en curso. Se usará su resultado.");
+        }
+        CompletableFuture<Map<String, UpdateInfo>> check = updateState.check(() -> {
+            try {
+                return runUpdateCheck(autoDownload);
+            } catch (CancellationException e) {
+                getLogger().warning(e.getMessage());
+                throw e;
+            } catch (RuntimeException e) {
+                getLogger().log(Level.SEVERE, "Error al comprobar actualizaciones", e);
+                throw e;
+            }
+        }, executor);
+
+        // Si está configurado para autoupdate y autoDownload es true, descargar al terminar
+        if (autoDownload) {
+            check = check.thenApply(results -> {
+                for (Map.Entry<String, UpdateInfo> entry : results.entrySet()) {
+                    if (entry.getValue().autoUpdate) {
+                        downloadAndInstallUpdate(entry.getKey(), entry.getValue());
+                    }
                 }
+                return results;
+            });
+        }
+        return check;
+    }
 
-                getLogger().info("Verificando actualizaciones de " + owner + "/" + repo + " - workflow: " + workflow);
+    /**
+     * Ejecuta una comprobación completa. Cada repositorio se comprueba en paralelo en el executor
+     * de comprobaciones, con un límite de tiempo por comprobación.
+     * @return Las actualizaciones encontradas
+     */
+    private Map<String, UpdateInfo> runUpdateCheck(boolean autoDownload) {
+        getLogger().info("Comprobando actualizaciones desde GitHub...");
+        long timeoutSeconds = Math.max(1, getConfig().getLong("github.check-timeout", 30));
+        long startTime = System.currentTimeMillis();
 
-                try {
-                    // Obtener el último ID de ejecución del workflow
-                    Long runId = getLatestWorkflowRunId(owner, repo, workflow, branch, token);
+        // Lanzar todas las comprobaciones a la vez
+        Map<String, Future<UpdateInfo>> checks = new LinkedHashMap<>();
+        for (RepositorySpec spec : repositories.values()) {
+            checks.put(spec.getKey(), submitRepositoryCheck(spec, timeoutSeconds, false));
+        }
 
-                    if (runId == null) {
-                        getLogger().warning("No se encontraron ejecuciones de workflow para " + owner + "/" + repo);
-                        continue;
-                    }
+        // Esperar a que terminen (o expiren) todas antes de publicar el resultado
+        Map<String, UpdateInfo> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<UpdateInfo>> entry : checks.entrySet()) {
+            try {
+                UpdateInfo updateInfo = entry.getValue().get();
+                if (updateInfo != null) {
+                    results.put(entry.getKey(), updateInfo);
+                }
+            } catch (CancellationException e) {
+                getLogger().warning("La comprobación de " + entry.getKey() + " superó el tiempo límite de " + timeoutSeconds + " segundos.");
+            } catch (ExecutionException e) {
+                getLogger().log(Level.SEVERE, "Error al comprobar actualizaciones para " + entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Comprobación de actualizaciones interrumpida.");
+            }
+        }
 
-                    getLogger().info("Último ID de ejecución de workflow encontrado: " + runId);
+        getLogger().info("Se comprobaron " + checks.size() + " repositorios en " + (System.currentTimeMillis() - startTime) + " ms.");
+        getLogger().info(String.format("Peticiones HTTP: %d, latencia media: %.1f ms.",
+                httpTransport.getRequestCount(), httpTransport.getAverageLatencyMillis()));
+        if (responseCache != null) {
+            getLogger().info("Caché de la API: " + responseCache.getHits() + " aciertos, " + responseCache.getMisses() + " fallos.");
+        }
 
-                    // Obtener la lista de artefactos
-                    JSONArray artifacts = getWorkflowRunArtifacts(owner, repo, runId, token);
+        // Mostrar resumen de actualizaciones pendientes
+        if (!results.isEmpty()) {
+            getLogger().info("Se encontraron " + results.size() + " actualizaciones disponibles.");
+            for (Map.Entry<String, UpdateInfo> entry : results.entrySet()) {
+                getLogger().info("- " + entry.getKey() + ": (ID: " + entry.getValue().artifactId + ")");
+            }
 
-                    if (artifacts.isEmpty()) {
-                        getLogger().warning("No se encontraron artefactos para la ejecución " + runId);
-                        continue;
-                    }
+            // Ofrecer comando para descargar todas las actualizaciones pendientes
+            if (!autoDownload) {
+                getLogger().info("Usa el comando '/pluginloader update' para instalar todas las actualizaciones.");
+            }
+        } else {
+            getLogger().info("No se encontraron actualizaciones nuevas para ningún plugin.");
+        }
 
-                    // Comprobar cada artefacto que coincida con el patrón
-                    boolean found = false;
-                    for (Object obj : artifacts) {
-                        JSONObject artifact = (JSONObject) obj;
-                        String name = (String) artifact.get("name");
-
-                        // Verificar si el nombre coincide con el patrón (usando * como comodín)
-                        if (matchesPattern(name, artifactName)) {
-                            long artifactId = (long) artifact.get("id");
-                            String downloadUrl = (String) artifact.get("archive_download_url");
-
-                            // Verificar si esta versión ya está instalada
-                            if (!versionTracker.isNewVersion(repoKey, artifactId, runId)) {
-                                getLogger().info("Ya tienes la última versión de " + name + " (Artifact ID: " + artifactId + ", Run ID: " + runId + ")");
-                                found = true;
-                                continue;
-                            }
+        return results;
+    }
 
-                            getLogger().info("¡Nueva versión disponible! Artefacto: " + name + " (ID: " + artifactId + ")");
-
-                            // Crear y almacenar la información de actualización
-                            UpdateInfo updateInfo = new UpdateInfo();
-                            updateInfo.owner = owner;
-                            updateInfo.repo = repo;
-                            updateInfo.artifactName = artifactName;
-                            updateInfo.token = token;
-                            updateInfo.artifactId = artifactId;
-                            updateInfo.runId = runId;
-                            updateInfo.downloadUrl = downloadUrl;
-                            updateInfo.name = name;
-                            updateInfo.version =  "(ID: " + artifactId + ")";
-
-                            pendingUpdates.put(repoKey, updateInfo);
-
-                            // Si está configurado para autoupdate y autoDownload es true, descargar ahora
-                            if (autoupdate && autoDownload) {
-                                downloadAndInstallUpdate(repoKey, updateInfo);
-                            }
+    /**
+     * Comprueba los repositorios a los que les toca según el programador, respetando el límite de peticiones.
+     * Cada resultado se publica en las actualizaciones pendientes en cuanto llega.
+     */
+    private void runScheduledChecks() {
+        if (updateState.isChecking()) {
+            // Una comprobación completa ya está consultando todos los repositorios
+            return;
+        }
 
-                            found = true;
-                        }
-                    }
+        Map<String, RepositorySpec> specs = repositories;
+        long now = System.currentTimeMillis();
+        long timeoutSeconds = Math.max(1, getConfig().getLong("github.check-timeout", 30));
+        for (String repoKey : updateScheduler.due(specs.keySet(), now)) {
+            RepositorySpec spec = specs.get(repoKey);
+            long blockedUntil = rateLimits.blockedUntil(spec.getToken());
+            if (blockedUntil > now) {
+                getLogger().info("Comprobación de " + repoKey + " aplazada " + ((blockedUntil - now) / 1000)
+                        + " segundos por el límite de peticiones de GitHub.");
+                updateScheduler.defer(repoKey, blockedUntil);
+                continue;
+            }
+            submitRepositoryCheck(spec, timeoutSeconds, true);
+        }
+    }
 
-                    if (!found) {
-                        getLogger().warning("No se encontraron artefactos que coincidan con el patrón: " + artifactName);
+    /**
+     * Envía la comprobación de un repositorio al executor de comprobaciones.
+     * El límite de tiempo empieza a contar cuando la comprobación arranca, no mientras espera en cola,
+     * y al expirar la tarea se cancela para que quien espera no se quede bloqueado.
+     * El resultado se registra en el programador para decidir cuándo volver a comprobar el repositorio.
+     * @param spec Configuración del repositorio
+     * @param timeoutSeconds Tiempo máximo de la comprobación en segundos
+     * @param publish Si es true, el resultado se publica en las actualizaciones pendientes al terminar
+     * @return El resultado futuro de la comprobación
+     */
+    private Future<UpdateInfo> submitRepositoryCheck(RepositorySpec spec, long timeoutSeconds, boolean publish) {
+        return submitCheck(spec, () -> checkRepository(spec), timeoutSeconds, publish, null);
+    }
+
+    /**
+     * Como {@link #submitRepositoryCheck}, pero con la comprobación indicada
+     * @param onUpdate Se llama con la actualización encontrada, después de publicarla; puede ser null
+     */
+    private Future<UpdateInfo> submitCheck(RepositorySpec spec, Callable<UpdateInfo> work, long timeoutSeconds, boolean publish,
+                                           Consumer<UpdateInfo> onUpdate) {
+        String repoKey = spec.getKey();
+        FutureTask<UpdateInfo> check = new FutureTask<UpdateInfo>(work) {
+            @Override
+            public void run() {
+                ScheduledFuture<?> deadline = checkWatchdog.schedule(() -> cancel(true), timeoutSeconds, TimeUnit.SECONDS);
+                try {
+                    super.run();
+                } finally {
+                    deadline.cancel(false);
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    updateScheduler.recordFailure(repoKey, new CancellationException());
+                    if (publish) {
+                        getLogger().warning("La comprobación de " + repoKey + " superó el tiempo límite de " + timeoutSeconds + " segundos.");
+                    }
+                    return;
+                }
+                try {
+                    UpdateInfo updateInfo = get();
+                    updateScheduler.recordSuccess(repoKey, rateLimits.slowDownFactor(spec.getToken()));
+                    if (publish) {
+                        updateState.update(repoKey, updateInfo);
+                    }
+                    if (updateInfo != null && onUpdate != null) {
+                        onUpdate.accept(updateInfo);
                     }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    updateScheduler.recordFailure(repoKey, cause);
+                    if (publish) {
+                        getLogger().warning("Error al comprobar actualizaciones para " + repoKey + ": " + cause.getMessage());
+                    } else if (cause instanceof GitHubApiException && ((GitHubApiException) cause).isAuthError()
+                            && updateScheduler.getFailures(repoKey) == 1) {
+                        // Un token no válido no se arregla solo: avisar aunque sea una comprobación programada (una vez por racha)
+                        getLogger().warning("Error al comprobar actualizaciones para " + repoKey + ": " + cause.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        checkExecutor.execute(check);
+        return check;
+    }
 
-                } catch (Exception e) {
-                    getLogger().log(Level.SEVERE, "Error al comprobar actualizaciones para " + owner + "/" + repo, e);
+    /**
+     * Recibe una ejecución completada del webhook y comprueba solo los repositorios que corresponden a ella,
+     * usando directamente su ID de ejecución (una sola petición a la API por repositorio)
+     * @return Número de repositorios que se van a comprobar
+     */
+    private int onWorkflowRun(WebhookServer.WorkflowRun run) {
+        long timeoutSeconds = Math.max(1, getConfig().getLong("github.check-timeout", 30));
+        int matched = 0;
+        for (RepositorySpec spec : repositories.values()) {
+            if (!run.matches(spec)) {
+                continue;
+            }
+            matched++;
+            // Una entrega repetida o el aviso tardío de una ejecución anterior no deben instalar una versión más antigua
+            long known = Math.max(versionTracker.getCurrentRunId(spec.getKey()), updateScheduler.getLatestRunId(spec.getKey()));
+            if (run.getRunId() <= known) {
+                getLogger().info("Webhook: la ejecución " + run.getRunId() + " de " + run.getRepository() + " no es posterior a la "
+                        + known + " ya vista en " + spec.getKey() + ". Se ignora.");
+                continue;
+            }
+            getLogger().info("Webhook: nueva ejecución " + run.getRunId() + " de " + run.getRepository() + ". Comprobando " + spec.getKey() + "...");
+            updateScheduler.observeRun(spec.getKey(), run.getRunId());
+            submitCheck(spec, () -> checkRun(spec, run.getRunId()), timeoutSeconds, true, updateInfo -> {
+                if (updateInfo.autoUpdate) {
+                    Bukkit.getScheduler().runTaskAsynchronously(this, () -> downloadAndInstallUpdate(spec.getKey(), updateInfo));
                 }
+            });
+        }
+        if (matched == 0) {
+            getLogger().fine("Webhook: la ejecución " + run.getRunId() + " de " + run.getRepository() + " no corresponde a ningún repositorio configurado.");
+        }
+        return matched;
+    }
+
+    /**
+     * Comprueba si hay una actualización disponible para un repositorio
+     * @param spec Configuración del repositorio
+     * @return La información de la actualización, o null si no hay nada nuevo
+     * @throws Exception Si falla la consulta a la API
+     */
+    private UpdateInfo checkRepository(RepositorySpec spec) throws Exception {
+        String repoKey = spec.getKey();
+        String owner = spec.getOwner();
+        String repo = spec.getRepo();
+        String workflow = spec.getWorkflow();
+
+        getLogger().info("Verificando actualizaciones de " + owner + "/" + repo + " - workflow: " + workflow);
+
+        // Con la caché compartida, solo una instancia consulta la API por repositorio
+        SharedCache.CheckResult shared = sharedCache != null ? sharedCheck(spec) : null;
+
+        // Obtener el último ID de ejecución del workflow
+        Long runId = shared != null ? shared.getRunId() : gitHubClient.getLatestWorkflowRunId(spec);
+
+        if (runId == null) {
+            getLogger().warning("No se encontraron ejecuciones de workflow para " + owner + "/" + repo);
+            return null;
+        }
+
+        getLogger().info("Último ID de ejecución de workflow encontrado: " + runId);
+        updateScheduler.observeRun(repoKey, runId);
+        if (shared != null) {
+            return evaluateArtifacts(spec, runId, shared.getArtifacts());
+        }
+        return checkRun(spec, runId);
+    }
+
+    /**
+     * Obtiene la última ejecución y sus artefactos a través de la caché compartida: reutiliza una comprobación
+     * reciente de otra instancia, la hace esta si consigue la concesión, o espera a la que la tiene.
+     * @return El resultado, o null si hay que comprobar sin la caché (p. ej. la otra instancia no terminó a tiempo)
+     */
+    private SharedCache.CheckResult sharedCheck(RepositorySpec spec) throws Exception {
+        String repoKey = spec.getKey();
+        String identity = spec.getIdentity();
+        SharedCache.CheckResult result = sharedCache.getResult(identity);
+        if (result != null) {
+            getLogger().info("Usando la comprobación de " + repoKey + " hecha por la instancia " + result.getInstance() + ".");
+            return result;
+        }
+
+        String leaseName = "check-" + identity;
+        try (SharedCache.Lease lease = sharedCache.tryLease(leaseName)) {
+            if (lease != null) {
+                Long runId = gitHubClient.getLatestWorkflowRunId(spec);
+                List<GitHubResponses.Artifact> artifacts = runId != null
+                        ? gitHubClient.getWorkflowRunArtifacts(spec, runId) : Collections.emptyList();
+                return sharedCache.putResult(identity, runId, artifacts);
             }
+        }
+
+        // Otra instancia está comprobando; sin pasar de la mitad del tiempo máximo de la comprobación
+        long timeoutMillis = Math.min(sharedCache.getLeaseMillis(),
+                TimeUnit.SECONDS.toMillis(Math.max(1, getConfig().getLong("github.check-timeout", 30))) / 2);
+        getLogger().info("Otra instancia está comprobando " + repoKey + ". Esperando su resultado...");
+        result = sharedCache.awaitResult(identity, leaseName, timeoutMillis);
+        if (result == null) {
+            getLogger().info("La otra instancia no publicó la comprobación de " + repoKey + " a tiempo. Se comprobará desde aquí.");
+        }
+        return result;
+    }
 
-            // Mostrar resumen de actualizaciones pendientes
-            if (!pendingUpdates.isEmpty()) {
-                getLogger().info("Se encontraron " + pendingUpdates.size() + " actualizaciones disponibles.");
-                for (Map.Entry<String, UpdateInfo> entry : pendingUpdates.entrySet()) {
-                    getLogger().info("- " + entry.getKey() + ": (ID: " + entry.getValue().artifactId + ")");
+    /**
+     * Busca entre los artefactos de una ejecución concreta uno nuevo que coincida con el patrón
+     * @return La información de la actualización, o null si no hay nada nuevo
+     */
+    private UpdateInfo checkRun(RepositorySpec spec, long runId) throws Exception {
+        // Obtener la lista de artefactos
+        return evaluateArtifacts(spec, runId, gitHubClient.getWorkflowRunArtifacts(spec, runId));
+    }
+
+    /**
+     * Busca entre los artefactos de una ejecución uno nuevo que coincida con el patrón
+     * @return La información de la actualización, o null si no hay nada nuevo
+     */
+    private UpdateInfo evaluateArtifacts(RepositorySpec spec, long runId, List<GitHubResponses.Artifact> artifacts) {
+        String repoKey = spec.getKey();
+        String owner = spec.getOwner();
+        String repo = spec.getRepo();
+        String artifactName = spec.getArtifactPattern();
+        String token = spec.getToken();
+        boolean autoupdate = spec.isAutoUpdate();
+
+        UpdateInfo latestUpdate = null;
+
+        if (artifacts.isEmpty()) {
+            getLogger().warning("No se encontraron artefactos para la ejecución " + runId);
+            return null;
+        }
+
+        // Comprobar cada artefacto que coincida con el patrón
+        boolean found = false;
+        for (GitHubResponses.Artifact artifact : artifacts) {
+            String name = artifact.getName();
+
+            // Verificar si el nombre coincide con el patrón (usando * como comodín)
+            if (spec.matchesArtifact(name)) {
+                long artifactId = artifact.getId();
+
+                // Verificar si esta versión ya está instalada
+                if (!versionTracker.isNewVersion(repoKey, artifactId, runId)) {
+                    getLogger().info("Ya tienes la última versión de " + name + " (Artifact ID: " + artifactId + ", Run ID: " + runId + ")");
+                    found = true;
+                    continue;
+                }
+
+                // Una ejecución nueva puede contener exactamente los mismos JARs (p. ej. al repetir el workflow)
+                if (isIdenticalToInstalled(spec, artifact)) {
+                    versionTracker.markCurrent(repoKey, String.valueOf(artifactId), "run-" + runId, runId);
+                    getLogger().info("El artefacto " + name + " (Run ID: " + runId + ") es idéntico a la versión instalada. No se descargará.");
+                    found = true;
+                    continue;
                 }
 
-                // Ofrecer comando para descargar todas las actualizaciones pendientes
-                if (!autoDownload) {
-                    getLogger().info("Usa el comando '/pluginloader update' para instalar todas las actualizaciones.");
+                // Ya descargada y pendiente de reinicio, o descartada por no ser un plugin válido
+                if (stagingArea.isStaged(repoKey, artifactId, runId)) {
+                    getLogger().info("La ejecución " + runId + " de " + name + " ya está preparada. Se aplicará al reiniciar el servidor.");
+                    found = true;
+                    continue;
                 }
-            } else {
-                getLogger().info("No se encontraron actualizaciones nuevas para ningún plugin.");
+                Long rejectedRun = rejectedRuns.get(repoKey);
+                if (rejectedRun != null && rejectedRun == runId) {
+                    getLogger().info("La ejecución " + runId + " de " + name + " no contiene un plugin válido. Se esperará a la siguiente.");
+                    found = true;
+                    continue;
+                }
+
+                // La versión se deshizo con un rollback: solo se instala con /pluginloader update
+                boolean skipped = runId <= versionTracker.getSkippedRunId(repoKey);
+                if (skipped) {
+                    getLogger().info("La ejecución " + runId + " de " + name + " se deshizo con un rollback. No se instalará"
+                            + " automáticamente; usa /pluginloader update para instalarla.");
+                } else {
+                    getLogger().info("¡Nueva versión disponible! Artefacto: " + name + " (ID: " + artifactId + ")");
+                }
+
+                // Crear la información de actualización
+                UpdateInfo updateInfo = new UpdateInfo();
+                updateInfo.owner = owner;
+                updateInfo.repo = repo;
+                updateInfo.artifactName = artifactName;
+                updateInfo.identity = spec.getIdentity();
+                updateInfo.token = token;
+                updateInfo.artifactId = artifactId;
+                updateInfo.runId = runId;
+                updateInfo.downloadUrl = artifact.getDownloadUrl();
+                updateInfo.name = name;
+                updateInfo.version =  "(ID: " + artifactId + ")";
+                updateInfo.size = artifact.getSize();
+                updateInfo.autoUpdate = autoupdate && !skipped;
+
+                latestUpdate = updateInfo;
+                found = true;
             }
-        };
+        }
 
-        if (isSync && this.isEnabled()) {
-            Bukkit.getScheduler().runTaskAsynchronously(this, checkTask);
-        } else {
-            checkTask.run();
+        if (!found) {
+            getLogger().warning("No se encontraron artefactos que coincidan con el patrón: " + artifactName);
+        }
+
+        return latestUpdate;
+    }
+
+    /**
+     * Compara el directorio central del ZIP remoto con la huella de la versión instalada, sin descargar el artefacto.
+     * Ante cualquier duda (sin huella, sin soporte de Range, error de red) se considera distinto.
+     */
+    private boolean isIdenticalToInstalled(RepositorySpec spec, GitHubResponses.Artifact artifact) {
+        if (!getConfig().getBoolean("github.skip-identical-builds", false)) {
+            return false;
+        }
+        String installed = versionTracker.getFingerprint(spec.getKey());
+        if (installed == null || installed.isEmpty()) {
+            return false;
         }
 
-        return pendingUpdates;
+        try {
+            String remote = gitHubClient.fetchArtifactFingerprint(artifact.getDownloadUrl(), spec.getToken());
+            boolean identical = installed.equals(remote);
+            metrics.increment("pluginloader_fingerprint_checks_total", "Comparaciones del contenido de artefactos nuevos con la versión instalada",
+                    1, "repo", spec.getKey(), "result", remote == null ? "unavailable" : identical ? "identical" : "changed");
+            return identical;
+        } catch (IOException e) {
+            getLogger().fine("No se pudo comparar el artefacto de " + spec.getKey() + " con la versión instalada: " + e.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -234,44 +835,160 @@ public class MainLoader extends JavaPlugin {
      * @param updateInfo Información de la actualización a descargar
      */
     public void downloadAndInstallUpdate(String repoKey, UpdateInfo updateInfo) {
-        getLogger().info("Descargando actualización para " + repoKey + "...");
         boolean isSync = Bukkit.getServer().isPrimaryThread();
         Runnable downloadTask = () -> {
+            // Evitar dos instalaciones simultáneas del mismo repositorio (p. ej. auto-update y /pluginloader update)
+            if (!updateState.beginInstall(repoKey)) {
+                getLogger().info("Ya se está instalando una actualización para " + repoKey + ".");
+                return;
+            }
+            getLogger().info("Descargando actualización para " + repoKey + "...");
+            File tempFolder = null;
+            SharedCache.Lease downloadLease = null;
             try {
-                // Eliminar la versión anterior si existe
-                String oldFileName = versionTracker.getCurrentPluginFileName(repoKey);
-                if (oldFileName != null) {
-                    File oldFile = new File(subPluginsFolder, oldFileName);
-                    if (oldFile.exists() && oldFile.delete()) {
-                        getLogger().info("Versión anterior eliminada: " + oldFileName);
+                // Nombre estable por artefacto para poder reanudar descargas tras un reinicio
+                File zipFile = new File(downloadsFolder, updateInfo.repo + "-" + updateInfo.artifactId + ".zip");
+                long resumableThreshold = getConfig().getLong("github.resumable-threshold-mb", 50) * 1024 * 1024;
+                boolean resumable = getConfig().getBoolean("github.resumable-downloads", true)
+                        && (updateInfo.size >= resumableThreshold || hasPartialDownload(zipFile));
+
+                // Los JARs se extraen a una carpeta temporal del almacén y después se mueven a él
+                tempFolder = artifactStore.createTempFolder(repoKey);
+
+                List<JarExtractor.ExtractedJar> extractedJars = null;
+                if (sharedCache != null) {
+                    // Los JARs ya publicados por otra instancia, o los que publique la que lo está descargando
+                    extractedJars = sharedCache.copyArtifact(updateInfo.identity, updateInfo.artifactId, tempFolder);
+                    String leaseName = "download-" + updateInfo.identity + "-" + updateInfo.artifactId;
+                    if (extractedJars == null && (downloadLease = sharedCache.tryLease(leaseName)) == null) {
+                        getLogger().info("Otra instancia está descargando el artefacto de " + repoKey + ". Esperando a que lo publique...");
+                        extractedJars = sharedCache.awaitArtifact(updateInfo.identity, updateInfo.artifactId, leaseName, tempFolder,
+                                TimeUnit.SECONDS.toMillis(Math.max(1, getConfig().getLong("shared-cache.wait-seconds", 600))));
+                        if (extractedJars == null) {
+                            getLogger().info("La otra instancia no publicó el artefacto de " + repoKey + " a tiempo. Se descargará desde aquí.");
+                        }
+                    }
+                    if (extractedJars != null) {
+                        getLogger().info("Artefacto de " + repoKey + " (ID: " + updateInfo.artifactId + ") tomado de la caché compartida.");
+                    }
+                }
+                if (extractedJars == null && !resumable && getConfig().getBoolean("github.streaming-install", true)) {
+                    try {
+                        // Descomprimir el ZIP directamente desde la conexión, sin guardarlo en disco
+                        extractedJars = downloadAndExtractJars(repoKey, updateInfo.downloadUrl, tempFolder, updateInfo.token);
+                    } catch (ZipException e) {
+                        getLogger().warning("No se pudo leer el artefacto de " + repoKey + " en streaming (" + e.getMessage() + "). Se usará la descarga completa.");
                     }
                 }
 
-                // Crear un nombre de archivo único con fecha
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd-HHmmss");
-                String timestamp = sdf.format(new Date());
-                String fileName = updateInfo.repo + "-" + timestamp + ".zip";
-                File zipFile = new File(downloadsFolder, fileName);
+                if (extractedJars == null) {
+                    // Descargar el archivo ZIP (reanudando la descarga parcial si existe)
+                    downloadFile(repoKey, updateInfo.downloadUrl, zipFile, updateInfo.token);
 
-                // Descargar el archivo ZIP
-                downloadFile(updateInfo.downloadUrl, zipFile, updateInfo.token);
+                    // Descomprimir el archivo ZIP
+                    extractedJars = extractJarsFromZip(repoKey, zipFile, tempFolder);
+                }
 
-                // Descomprimir el archivo ZIP y mover los JARs a la carpeta de sub-plugins
-                String extractedFileName = extractJarsFromZip(zipFile, subPluginsFolder, repoKey);
+                if (extractedJars.isEmpty()) {
+                    getLogger().warning("El artefacto de " + repoKey + " no contiene ningún archivo JAR.");
+                } else {
+                    // Comprobar que cada JAR es un plugin válido antes de tocar la versión instalada
+                    for (JarExtractor.ExtractedJar jar : extractedJars) {
+                        try {
+                            SubPluginDescriptor.read(jar.getFile());
+                        } catch (InvalidPluginException e) {
+                            getLogger().severe("El artefacto de " + repoKey + " (Run ID: " + updateInfo.runId + ") contiene un JAR no válido ("
+                                    + jar.getName() + ": " + e.getMessage() + "). Se mantiene la versión actual.");
+                            rejectedRuns.put(repoKey, updateInfo.runId);
+                            updateState.remove(repoKey, updateInfo);
+                            return;
+                        }
+                    }
+
+                    // Guardar cada JAR en el almacén
+                    for (JarExtractor.ExtractedJar jar : extractedJars) {
+                        artifactStore.put(jar);
+                    }
+                    if (downloadLease != null) {
+                        try {
+                            sharedCache.putArtifact(updateInfo.identity, updateInfo.artifactId, extractedJars, artifactStore);
+                        } catch (IOException e) {
+                            getLogger().log(Level.WARNING, "No se pudo publicar el artefacto de " + repoKey + " en la caché compartida", e);
+                        }
+                    }
+                    String version = "run-" + updateInfo.runId;
+                    String fingerprint = ArtifactFingerprint.of(extractedJars);
+
+                    // Mientras no se hayan cargado los sub-plugins se instala directamente; el bloqueo evita
+                    // que el arranque empiece a cargarlos a mitad de una instalación
+                    boolean loaded;
+                    boolean staged = false;
+                    File installedFile = null;
+                    String oldFileName = null;
+                    synchronized (subPluginsLoadLock) {
+                        loaded = subPluginsLoaded;
+                        // Si la versión cargada no se puede recargar en caliente, el JAR actual no se toca
+                        if (loaded && (!isHotReloadEnabled() || !canHotSwap(extractedJars.get(extractedJars.size() - 1).getFile()))) {
+                            // La versión cargada no se toca: la nueva se aplica al reiniciar, antes de cargar los sub-plugins
+                            stagingArea.stage(repoKey, extractedJars, artifactStore, String.valueOf(updateInfo.artifactId),
+                                    version, updateInfo.runId, fingerprint);
+                            staged = true;
+                        } else {
+                            // Eliminar la versión anterior de sub-plugins (sigue disponible en el almacén)
+                            oldFileName = versionTracker.getCurrentPluginFileName(repoKey);
+                            if (oldFileName != null) {
+                                File oldFile = new File(subPluginsFolder, oldFileName);
+                                if (oldFile.exists() && oldFile.delete()) {
+                                    getLogger().info("Versión anterior eliminada: " + oldFileName);
+                                }
+                            }
+
+                            // Enlazar cada JAR en la carpeta de sub-plugins
+                            JarExtractor.ExtractedJar installedJar = null;
+                            for (JarExtractor.ExtractedJar jar : extractedJars) {
+                                installedFile = artifactStore.link(jar.getSha256(), JarExtractor.uniqueFile(subPluginsFolder, jar.getName()));
+                                installedJar = jar;
+                            }
+
+                            // Actualizar la información de versión
+                            versionTracker.updatePluginInfo(repoKey, String.valueOf(updateInfo.artifactId), version, updateInfo.runId,
+                                    installedFile.getName(), installedJar.getSha256(), installedJar.getSize(), fingerprint);
+                            getLogger().info("Información de versión actualizada para " + repoKey);
+                        }
+                    }
 
-                // Actualizar la información de versión
-                if (extractedFileName != null) {
-                    versionTracker.updatePluginInfo(repoKey, String.valueOf(updateInfo.artifactId),
-                            "run-" + updateInfo.runId, updateInfo.runId, extractedFileName);
-                    getLogger().info("Información de versión actualizada para " + repoKey);
-                    getLogger().info("Actualización completada para " + repoKey + ". Reinicia el servidor para cargar la nueva versión.");
+                    if (staged) {
+                        getLogger().info("Actualización preparada para " + repoKey + ". Se aplicará al reiniciar el servidor.");
+                    } else if (!loaded) {
+                        getLogger().info("Actualización completada para " + repoKey + ".");
+                    } else {
+                        getLogger().info("Actualización completada para " + repoKey + ". Se recargará sin reiniciar el servidor.");
+                        hotSwap(installedFile, oldFileName);
+                    }
+
+                    long quota = getConfig().getLong("github.store-max-size-mb", 1024) * 1024 * 1024;
+                    Set<String> keep = new HashSet<>(versionTracker.getInstalledHashes());
+                    keep.addAll(stagingArea.getStagedHashes());
+                    artifactStore.evict(quota, keep);
                 }
 
                 // Eliminar esta actualización de la lista de pendientes
-                pendingUpdates.remove(repoKey);
+                updateState.remove(repoKey, updateInfo);
 
             } catch (Exception e) {
                 getLogger().log(Level.SEVERE, "Error al descargar e instalar la actualización para " + repoKey, e);
+            } finally {
+                if (downloadLease != null) {
+                    try {
+                        downloadLease.close();
+                    } catch (IOException e) {
+                        getLogger().fine("No se pudo liberar la concesión de descarga de " + repoKey + ": " + e.getMessage());
+                    }
+                }
+                if (tempFolder != null) {
+                    artifactStore.deleteTempFolder(tempFolder);
+                }
+                updateState.endInstall(repoKey);
             }
         };
         if (isSync && this.isEnabled()) {
@@ -285,21 +1002,23 @@ public class MainLoader extends JavaPlugin {
      * Descarga e instala todas las actualizaciones pendientes
      */
     public void downloadAllPendingUpdates() {
+        Map<String, UpdateInfo> pendingUpdates = updateState.getPending();
         if (pendingUpdates.isEmpty()) {
             getLogger().info("No hay actualizaciones pendientes para descargar.");
             return;
         }
 
         getLogger().info("Descargando " + pendingUpdates.size() + " actualizaciones pendientes...");
+        // Una actualización pedida a mano anula la ejecución descartada con un rollback
+        for (String repoKey : pendingUpdates.keySet()) {
+            if (versionTracker.clearSkippedRun(repoKey)) {
+                getLogger().info("Se instalará de nuevo la versión de " + repoKey + " que se había deshecho con un rollback.");
+            }
+        }
         boolean isSync = Bukkit.getServer().isPrimaryThread();
         Runnable downloadAllTask = () -> {
-            String[] keys = pendingUpdates.keySet().toArray(new String[0]);
-
-            for (String repoKey : keys) {
-                UpdateInfo updateInfo = pendingUpdates.get(repoKey);
-                if (updateInfo != null) {
-                    downloadAndInstallUpdate(repoKey, updateInfo);
-                }
+            for (Map.Entry<String, UpdateInfo> entry : pendingUpdates.entrySet()) {
+                downloadAndInstallUpdate(entry.getKey(), entry.getValue());
             }
             getLogger().info("Todas las actualizaciones han sido descargadas. Reinicia el servidor para cargarlas.");
         };
@@ -310,154 +1029,433 @@ public class MainLoader extends JavaPlugin {
         }
     }
 
-    private boolean matchesPattern(String name, String pattern) {
-        String regex = pattern.replace(".", "\\.").replace("*", ".*");
-        return name.matches(regex);
+    /**
+     * @return Copia inmutable de las actualizaciones pendientes según la última comprobación
+     */
+    public Map<String, UpdateInfo> getPendingUpdates() {
+        return updateState.getPending();
+    }
+
+    /**
+     * Resultado de {@link #rollbackPlugin(String)}
+     */
+    public enum RollbackResult {
+        // No se pudo restaurar
+        FAILED,
+        // Restaurada; se cargará al reiniciar el servidor
+        RESTART_REQUIRED,
+        // Restaurada y recargándose en caliente
+        HOT_SWAPPED
     }
 
-    private Long getLatestWorkflowRunId(String owner, String repo, String workflow, String branch, String token) throws Exception {
-        String apiUrl = "https://api.github.com/repos/" + owner + "/" + repo + "/actions/workflows/" + workflow + "/runs?branch=" + branch + "&status=success&per_page=1";
+    /**
+     * Vuelve a la versión anterior de un plugin usando la copia del almacén, sin acceder a la red
+     * @param repoKey Clave del repositorio en la configuración
+     * @return Si se restauró y si se está recargando en caliente o hace falta reiniciar
+     */
+    public RollbackResult rollbackPlugin(String repoKey) {
+        VersionTracker.PluginInfo previous = versionTracker.getPreviousVersion(repoKey);
+        if (previous == null) {
+            getLogger().warning("No hay versiones anteriores de " + repoKey + " para restaurar.");
+            return RollbackResult.FAILED;
+        }
+        if (!artifactStore.contains(previous.getSha256())) {
+            getLogger().warning("La versión anterior de " + repoKey + " ya no está en el almacén.");
+            return RollbackResult.FAILED;
+        }
 
-        JSONObject response = makeGitHubApiRequest(apiUrl, token);
-        JSONArray workflowRuns = (JSONArray) response.get("workflow_runs");
+        // Una actualización preparada sustituiría a la versión restaurada en el próximo reinicio
+        if (stagingArea.discard(repoKey)) {
+            getLogger().info("Descartada la actualización preparada de " + repoKey + ".");
+        }
 
-        if (workflowRuns != null && !workflowRuns.isEmpty()) {
-            JSONObject latestRun = (JSONObject) workflowRuns.get(0);
-            return (Long) latestRun.get("id");
+        String currentFileName = versionTracker.getCurrentPluginFileName(repoKey);
+        File restoredFile = new File(subPluginsFolder, previous.getFileName());
+        try {
+            if (currentFileName != null) {
+                Files.deleteIfExists(new File(subPluginsFolder, currentFileName).toPath());
+            }
+            artifactStore.link(previous.getSha256(), restoredFile);
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Error al restaurar la versión anterior de " + repoKey, e);
+            return RollbackResult.FAILED;
         }
 
-        return null;
+        versionTracker.rollback(repoKey);
+        if (isHotReloadEnabled() && canHotSwap(restoredFile)) {
+            getLogger().info("Restaurada la versión " + previous.getVersion() + " de " + repoKey + ". Se recargará sin reiniciar el servidor.");
+            hotSwap(restoredFile, currentFileName);
+            return RollbackResult.HOT_SWAPPED;
+        }
+        getLogger().info("Restaurada la versión " + previous.getVersion() + " de " + repoKey + ". Reinicia el servidor para cargarla.");
+        return RollbackResult.RESTART_REQUIRED;
     }
 
-    private JSONArray getWorkflowRunArtifacts(String owner, String repo, Long runId, String token) throws Exception {
-        String apiUrl = "https://api.github.com/repos/" + owner + "/" + repo + "/actions/runs/" + runId + "/artifacts";
-
-        JSONObject response = makeGitHubApiRequest(apiUrl, token);
-        return (JSONArray) response.get("artifacts");
+    /**
+     * @return false si el JAR no es válido, si el plugin cargado con ese nombre no lo cargó este loader
+     * o si hay plugins habilitados que dependen de él
+     */
+    private boolean canHotSwap(File jar) {
+        String name;
+        try {
+            name = SubPluginDescriptor.read(jar).getName();
+        } catch (InvalidPluginException e) {
+            getLogger().severe("No se puede recargar " + jar.getName() + ": " + e.getMessage());
+            return false;
+        }
+        Plugin loaded = Bukkit.getPluginManager().getPlugin(name);
+        if (loaded != null && !loadedSubPlugins.contains(loaded.getName())) {
+            getLogger().warning("El plugin " + loaded.getName() + " no es un sub-plugin de PluginLoader. No se recargará en caliente.");
+            return false;
+        }
+        return !hasDependents(name);
     }
 
-    private JSONObject makeGitHubApiRequest(String apiUrl, String token) throws Exception {
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    /**
+     * Comprueba si algún plugin habilitado depende (depend o softdepend) del indicado. Al descargarlo, esos plugins
+     * seguirían usando sus clases ya descargadas, así que en ese caso no se recarga en caliente.
+     * @return true si los hay (y se informa en el log)
+     */
+    private boolean hasDependents(String pluginName) {
+        List<String> dependents = new ArrayList<>();
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins()) {
+            if (plugin.isEnabled() && !plugin.getName().equalsIgnoreCase(pluginName)
+                    && (plugin.getDescription().getDepend().contains(pluginName) || plugin.getDescription().getSoftDepend().contains(pluginName))) {
+                dependents.add(plugin.getName());
+            }
+        }
+        if (dependents.isEmpty()) {
+            return false;
+        }
+        getLogger().warning("No se recargará " + pluginName + " en caliente: " + String.join(", ", dependents)
+                + " depende de él y seguiría usando las clases de la versión descargada. La nueva versión se cargará al reiniciar el servidor.");
+        return true;
+    }
 
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("User-Agent", USER_AGENT);
+    private boolean isHotReloadEnabled() {
+        return isEnabled() && getConfig().getBoolean("sub-plugins.hot-reload", false);
+    }
 
-        if (token != null && !token.isEmpty()) {
-            conn.setRequestProperty("Authorization", "token " + token);
-        }
+    /**
+     * Sustituye en caliente la versión cargada de un sub-plugin por la del nuevo JAR.
+     * Se ejecuta en el hilo principal, como exige Bukkit.
+     * @param newJar JAR recién instalado en la carpeta de sub-plugins
+     * @param oldFileName Nombre del JAR anterior, o null si no había
+     */
+    private void hotSwap(File newJar, String oldFileName) {
+        Bukkit.getScheduler().runTask(this, () -> {
+            SubPluginDescriptor descriptor;
+            try {
+                descriptor = SubPluginDescriptor.read(newJar);
+            } catch (InvalidPluginException e) {
+                getLogger().severe("No se puede recargar " + newJar.getName() + ": " + e.getMessage());
+                return;
+            }
 
-        int responseCode = conn.getResponseCode();
+            // Las bibliotecas compartidas se fijan al arrancar: la nueva versión usará las que ya están cargadas
+            if (sharedLibraries != null) {
+                try {
+                    List<String> mismatches = sharedLibraries.findMismatches(newJar);
+                    if (!mismatches.isEmpty()) {
+                        getLogger().warning(newJar.getName() + " incluye versiones distintas de bibliotecas compartidas (" + String.join(", ", mismatches)
+                                + "). Usará las compartidas hasta que se reinicie el servidor.");
+                    }
+                } catch (IOException e) {
+                    getLogger().fine("No se pudieron comparar las bibliotecas de " + newJar.getName() + ": " + e.getMessage());
+                }
+            }
 
-        if (responseCode != 200) {
-            throw new IOException("Error en la API de GitHub. Código de respuesta: " + responseCode);
-        }
+            // Descargar la versión anterior, solo si la cargó este loader
+            Plugin oldPlugin = Bukkit.getPluginManager().getPlugin(descriptor.getName());
+            if (oldPlugin != null) {
+                if (!loadedSubPlugins.contains(oldPlugin.getName())) {
+                    getLogger().warning("El plugin " + oldPlugin.getName() + " no es un sub-plugin de PluginLoader. No se recargará.");
+                    return;
+                }
+                if (hasDependents(oldPlugin.getName())) {
+                    return;
+                }
+                WeakReference<ClassLoader> oldClassLoader = hotSwapper.unload(oldPlugin);
+                loadedSubPlugins.remove(oldPlugin.getName());
+                hotSwapper.verifyCollected(oldPlugin.getName(), oldClassLoader);
+            }
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
+            // Con el classloader cerrado, el JAR anterior ya se puede borrar en cualquier sistema
+            if (oldFileName != null && !oldFileName.equals(newJar.getName())) {
+                File oldFile = new File(subPluginsFolder, oldFileName);
+                if (oldFile.exists() && !oldFile.delete()) {
+                    getLogger().warning("No se pudo eliminar la versión anterior: " + oldFileName);
+                }
+            }
 
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
-        }
-        in.close();
+            // Si está en espera, la nueva versión también espera hasta que se use
+            if (lazySubPlugins != null && lazySubPlugins.isPending(descriptor.getName())) {
+                lazySubPlugins.register(descriptor);
+                hotSwapper.syncCommands();
+                getLogger().info("Sub-plugin " + descriptor.getName() + " actualizado. Sigue en espera hasta que se use.");
+                return;
+            }
 
-        JSONParser parser = new JSONParser();
-        return (JSONObject) parser.parse(response.toString());
+            try {
+                Plugin plugin = loadPlugin(descriptor);
+                if (plugin != null) {
+                    Bukkit.getPluginManager().enablePlugin(plugin);
+                    getLogger().info("Sub-plugin recargado en caliente: " + plugin.getName() + " v" + plugin.getDescription().getVersion());
+                }
+            } catch (Exception e) {
+                getLogger().log(Level.SEVERE, "Error al recargar el sub-plugin " + descriptor.getName(), e);
+            }
+            hotSwapper.syncCommands();
+        });
     }
 
-    private void downloadFile(String downloadUrl, File outputFile, String token) throws IOException {
-        URL url = new URL(downloadUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("User-Agent", USER_AGENT);
+    private boolean hasPartialDownload(File outputFile) {
+        return new File(outputFile.getPath() + ".part").exists();
+    }
 
-        if (token != null && !token.isEmpty()) {
-            conn.setRequestProperty("Authorization", "token " + token);
+    /**
+     * Descarga un archivo guardando el progreso en un .part y su diario, de forma que un fallo
+     * (o un reinicio) permita continuar con una petición Range. Reintenta la descarga
+     * hasta el número de veces configurado.
+     */
+    private void downloadFile(String repoKey, String downloadUrl, File outputFile, String token) throws IOException {
+        int attempts = Math.max(1, getConfig().getInt("github.download-retries", 3));
+        long startTime = System.currentTimeMillis();
+        long transferred = 0;
+        for (int attempt = 1; ; attempt++) {
+            long[] written = new long[1];
+            try {
+                downloadFileAttempt(downloadUrl, outputFile, token, written);
+                recordDownload(repoKey, transferred + written[0], System.currentTimeMillis() - startTime);
+                return;
+            } catch (IOException e) {
+                transferred += written[0];
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                getLogger().warning("Descarga interrumpida (" + e.getMessage() + "). Reintentando " + attempt + "/" + (attempts - 1) + "...");
+            }
         }
+    }
 
-        int responseCode = conn.getResponseCode();
-
-        if (responseCode != 200) {
-            throw new IOException("Error al descargar el archivo. Código de respuesta: " + responseCode);
+    /**
+     * @param transferred Se rellena con los bytes recibidos en este intento, aunque falle
+     */
+    private void downloadFileAttempt(String downloadUrl, File outputFile, String token, long[] transferred) throws IOException {
+        File partFile = new File(outputFile.getPath() + ".part");
+        File journalFile = new File(outputFile.getPath() + ".part.properties");
+
+        // Ver cuánto se descargó en un intento anterior
+        DownloadJournal previous = DownloadJournal.load(journalFile);
+        long offset = 0;
+        if (previous != null && previous.getUrl().equals(downloadUrl) && partFile.exists()) {
+            offset = Math.min(previous.getBytes(), partFile.length());
         }
 
-        try (InputStream inputStream = conn.getInputStream();
-             FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+        Map<String, String> headers = gitHubClient.requestHeaders(token);
+        if (offset > 0) {
+            headers.put("Range", "bytes=" + offset + "-");
+            if (previous.getEtag() != null) {
+                headers.put("If-Range", previous.getEtag());
+            }
+        }
 
-            byte[] buffer = new byte[4096];
-            int bytesRead;
+        DownloadJournal journal;
+        try (HttpTransport.Response response = httpTransport.get(downloadUrl, headers, false)) {
+            int responseCode = response.getStatusCode();
+
+            long expectedSize;
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL && offset > 0 && rangeStartsAt(response, offset)) {
+                getLogger().info("Reanudando descarga de " + outputFile.getName() + " desde el byte " + offset);
+                expectedSize = rangeTotal(response, offset);
+            } else if (responseCode == 200) {
+                if (offset > 0) {
+                    getLogger().info("El servidor no admite reanudar la descarga de " + outputFile.getName() + ". Se descargará completa.");
+                }
+                offset = 0;
+                expectedSize = contentLength(response);
+            } else if (offset > 0 && (responseCode == 416 || responseCode == HttpURLConnection.HTTP_PARTIAL)) {
+                // El fragmento guardado no encaja con el archivo remoto: si se conservara, cada reintento
+                // (incluso tras reiniciar) pediría el mismo Range y fallaría igual
+                getLogger().warning("No se puede reanudar la descarga de " + outputFile.getName() + " (código " + responseCode
+                        + "). Se descartará lo descargado y se pedirá el archivo completo.");
+                partFile.delete();
+                previous.delete();
+                downloadFileAttempt(downloadUrl, outputFile, token, transferred);
+                return;
+            } else {
+                throw new IOException("Error al descargar el archivo. Código de respuesta: " + responseCode);
+            }
 
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            String etag = response.getHeader("ETag");
+            if (etag == null && offset > 0) {
+                etag = previous.getEtag();
+            }
+            journal = new DownloadJournal(journalFile, downloadUrl, etag, offset);
+            journal.save();
+
+            long written = offset;
+            boolean completed = false;
+            try (InputStream inputStream = workGovernor.throttleDownload(response.getBody());
+                 FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+                channel.truncate(offset);
+                channel.position(offset);
+
+                byte[] buffer = new byte[64 * 1024];
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                long lastSaved = written;
+                int bytesRead;
+
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    byteBuffer.clear();
+                    byteBuffer.limit(bytesRead);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                    written += bytesRead;
+                    transferred[0] += bytesRead;
+
+                    // Guardar el progreso cada pocos MB
+                    if (written - lastSaved >= JOURNAL_INTERVAL) {
+                        journal.setBytes(written);
+                        journal.save();
+                        lastSaved = written;
+                    }
+                }
+                // Una conexión cortada puede terminar el flujo sin error: no dar por buena una descarga incompleta
+                if (expectedSize >= 0 && written != expectedSize) {
+                    throw new IOException("Descarga incompleta de " + outputFile.getName() + ": " + written + " de " + expectedSize + " bytes");
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    journal.setBytes(written);
+                    journal.save();
+                }
             }
         }
 
+        Files.move(partFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        journal.delete();
+
         getLogger().info("Archivo descargado en: " + outputFile.getAbsolutePath());
     }
 
-    private String extractJarsFromZip(File zipFile, File destFolder, String repoKey) {
-        getLogger().info("Extrayendo archivos JAR de " + zipFile.getName() + " a " + destFolder.getAbsolutePath());
+    private boolean rangeStartsAt(HttpTransport.Response response, long offset) {
+        // Formato esperado: "bytes <inicio>-<fin>/<total>"
+        String contentRange = response.getHeader("Content-Range");
+        return contentRange != null && contentRange.startsWith("bytes " + offset + "-");
+    }
 
-        String extractedFileName = null;
+    /**
+     * @return Tamaño total del archivo según Content-Range (o el desplazamiento más Content-Length), o -1 si no se conoce
+     */
+    private long rangeTotal(HttpTransport.Response response, long offset) {
+        String contentRange = response.getHeader("Content-Range");
+        int slash = contentRange.lastIndexOf('/');
+        if (slash != -1) {
+            try {
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                // Total desconocido ("*")
+            }
+        }
+        long length = contentLength(response);
+        return length >= 0 ? offset + length : -1;
+    }
 
+    /**
+     * @return Content-Length de la respuesta, o -1 si no viene
+     */
+    private long contentLength(HttpTransport.Response response) {
+        String length = response.getHeader("Content-Length");
+        if (length == null) {
+            return -1;
+        }
         try {
-            java.util.zip.ZipFile zip = new java.util.zip.ZipFile(zipFile);
-            java.util.Enumeration<? extends java.util.zip.ZipEntry> entries = zip.entries();
-
-            while (entries.hasMoreElements()) {
-                java.util.zip.ZipEntry entry = entries.nextElement();
-                String name = entry.getName();
-
-                // Solo procesar archivos JAR
-                if (name.toLowerCase().endsWith(".jar")) {
-                    getLogger().info("Extrayendo: " + name);
-
-                    File outFile = new File(destFolder, new File(name).getName());
-                    extractedFileName = outFile.getName();
-
-                    // Evitar archivos duplicados
-                    if (outFile.exists()) {
-                        String baseName = outFile.getName().substring(0, outFile.getName().lastIndexOf('.'));
-                        String extension = outFile.getName().substring(outFile.getName().lastIndexOf('.'));
-                        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd-HHmmss");
-                        String timestamp = sdf.format(new Date());
-                        extractedFileName = baseName + "-" + timestamp + extension;
-                        outFile = new File(destFolder, extractedFileName);
-                    }
-
-                    // Copiar el archivo
-                    try (InputStream in = zip.getInputStream(entry);
-                         FileOutputStream out = new FileOutputStream(outFile)) {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
-                        byte[] buffer = new byte[4096];
-                        int bytesRead;
+    /**
+     * Descarga el artefacto y extrae sus JARs a la vez, sin guardar el ZIP en disco
+     * @return Los JARs extraídos
+     */
+    private List<JarExtractor.ExtractedJar> downloadAndExtractJars(String repoKey, String downloadUrl, File destFolder, String token) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long[] received = new long[1];
+        List<JarExtractor.ExtractedJar> extractedJars;
+        try (HttpTransport.Response response = gitHubClient.openDownload(downloadUrl, token)) {
+            getLogger().info("Extrayendo archivos JAR del artefacto...");
+            InputStream counted = new FilterInputStream(workGovernor.throttleDownload(response.getBody())) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        received[0]++;
+                    }
+                    return b;
+                }
 
-                        while ((bytesRead = in.read(buffer)) != -1) {
-                            out.write(buffer, 0, bytesRead);
-                        }
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        received[0] += read;
                     }
+                    return read;
                 }
-            }
+            };
+            extractedJars = jarExtractor.extract(counted, destFolder);
+        }
 
-            zip.close();
-            getLogger().info("Extracción completada.");
+        // En streaming la descarga y la extracción son la misma operación
+        long elapsed = System.currentTimeMillis() - startTime;
+        recordDownload(repoKey, received[0], elapsed);
+        recordExtraction(repoKey, elapsed);
+        logExtractedJars(extractedJars, startTime);
+        return extractedJars;
+    }
 
-            // Opcionalmente, eliminar el archivo ZIP después de extraerlo
-            if (getConfig().getBoolean("github.delete-after-extract", true)) {
-                if (zipFile.delete()) {
-                    getLogger().info("Archivo ZIP eliminado: " + zipFile.getName());
-                } else {
-                    getLogger().warning("No se pudo eliminar el archivo ZIP: " + zipFile.getName());
-                }
-            }
+    private List<JarExtractor.ExtractedJar> extractJarsFromZip(String repoKey, File zipFile, File destFolder) throws IOException {
+        getLogger().info("Extrayendo archivos JAR de " + zipFile.getName() + "...");
 
-        } catch (IOException e) {
-            getLogger().log(Level.SEVERE, "Error al extraer archivos del ZIP: " + zipFile.getName(), e);
+        long startTime = System.currentTimeMillis();
+        List<JarExtractor.ExtractedJar> extractedJars = jarExtractor.extract(zipFile, destFolder);
+        recordExtraction(repoKey, System.currentTimeMillis() - startTime);
+        logExtractedJars(extractedJars, startTime);
+
+        // El contenido queda en el almacén, así que el ZIP ya no hace falta
+        if (zipFile.delete()) {
+            getLogger().info("Archivo ZIP eliminado: " + zipFile.getName());
+        } else {
+            getLogger().warning("No se pudo eliminar el archivo ZIP: " + zipFile.getName());
+        }
+
+        return extractedJars;
+    }
+
+    private void recordDownload(String repoKey, long bytes, long millis) {
+        metrics.increment("pluginloader_download_bytes_total", "Bytes descargados de artefactos", bytes, "repo", repoKey);
+        metrics.observe("pluginloader_download_seconds", "Duración de las descargas de artefactos", millis, "repo", repoKey);
+        if (millis > 0) {
+            getLogger().info(String.format("Descargados %.1f MB en %.1f s (%.1f MB/s).",
+                    bytes / 1048576.0, millis / 1000.0, bytes / 1048576.0 / (millis / 1000.0)));
         }
+    }
 
-        return extractedFileName;
+    private void recordExtraction(String repoKey, long millis) {
+        metrics.observe("pluginloader_extract_seconds", "Duración de la extracción de los JARs de un artefacto", millis, "repo", repoKey);
+    }
+
+    private void logExtractedJars(List<JarExtractor.ExtractedJar> extractedJars, long startTime) {
+        for (JarExtractor.ExtractedJar jar : extractedJars) {
+            getLogger().info("Extraído: " + jar.getName() + " (" + jar.getSize() + " bytes, SHA-256: " + jar.getSha256() + ")");
+        }
+        getLogger().info("Extracción completada en " + (System.currentTimeMillis() - startTime) + " ms.");
     }
 
     private void loadSubPlugins() {
@@ -473,86 +1471,227 @@ public class MainLoader extends JavaPlugin {
             return;
         }
 
+        // Analizar todos los JARs en paralelo antes de cargar ninguno
+        long startTime = System.currentTimeMillis();
+        List<SubPluginDescriptor> descriptors;
+        int scanThreads = Math.min(jarFiles.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(scanThreads, newThreadFactory("PluginLoader-Scan"));
+        try {
+            descriptors = subPluginScanner.scan(jarFiles, scanExecutor, descriptorIndex);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLogger().warning("Análisis de sub-plugins interrumpido.");
+            return;
+        } finally {
+            scanExecutor.shutdown();
+        }
+
+        // Cargar en orden de dependencias
+        List<SubPluginDescriptor> loadOrder = subPluginScanner.resolveLoadOrder(descriptors,
+                name -> Bukkit.getPluginManager().getPlugin(name) != null);
+        getLogger().info("Analizados " + jarFiles.length + " sub-plugins en " + (System.currentTimeMillis() - startTime) + " ms.");
+
+        // Bibliotecas incluidas en varios sub-plugins: una sola copia para todos
+        if (getConfig().getBoolean("sub-plugins.shared-libraries", false) && sharedLibraryLoader == null) {
+            setUpSharedLibraries(descriptors);
+        }
+
+        // Los sub-plugins lazy solo registran sus comandos; se cargan al usarlos
+        lazySubPlugins = new LazySubPlugins(getLogger(), this::activateLazyPlugin);
+        Set<String> lazyNames = resolveLazyNames(loadOrder);
+
         int loadedPlugins = 0;
-        for (File jarFile : jarFiles) {
+        for (SubPluginDescriptor descriptor : loadOrder) {
+            if (lazyNames.contains(descriptor.getName().toLowerCase())) {
+                lazySubPlugins.register(descriptor);
+                getLogger().info("Sub-plugin en espera: " + descriptor.getName() + " (se cargará al usar "
+                        + (descriptor.getCommands().isEmpty() ? "/pluginloader activate" : "uno de sus comandos") + ")");
+                continue;
+            }
             try {
-                if (loadPlugin(jarFile)) {
+                if (loadPlugin(descriptor) != null) {
                     loadedPlugins++;
                 }
             } catch (Exception e) {
-                getLogger().log(Level.SEVERE, "Error al cargar sub-plugin: " + jarFile.getName(), e);
+                getLogger().log(Level.SEVERE, "Error al cargar sub-plugin: " + descriptor.getFile().getName(), e);
             }
         }
 
         getLogger().info("Se cargaron " + loadedPlugins + " sub-plugins correctamente.");
+        if (lazySubPlugins.size() > 0) {
+            getLogger().info(lazySubPlugins.size() + " sub-plugins en espera hasta que se usen.");
+        }
     }
 
-    private boolean loadPlugin(File jarFile) throws InvalidPluginException, InvalidDescriptionException {
-        try {
-            // Verificar si el archivo es un plugin válido
-            JarFile jar = new JarFile(jarFile);
-            JarEntry pluginYml = jar.getJarEntry("plugin.yml");
+    /**
+     * @return Nombres en minúsculas de los sub-plugins configurados como lazy que pueden esperar. Los que necesita
+     * (depend, softdepend o loadbefore) un sub-plugin que se carga al arrancar también se cargan al arrancar.
+     */
+    private Set<String> resolveLazyNames(List<SubPluginDescriptor> descriptors) {
+        Set<String> lazyNames = new HashSet<>();
+        for (String name : getConfig().getStringList("sub-plugins.lazy")) {
+            lazyNames.add(name.toLowerCase());
+        }
 
-            if (pluginYml == null) {
-                jar.close();
-                throw new InvalidPluginException("El archivo JAR no contiene plugin.yml");
+        boolean changed = !lazyNames.isEmpty();
+        while (changed) {
+            changed = false;
+            for (SubPluginDescriptor descriptor : descriptors) {
+                if (lazyNames.contains(descriptor.getName().toLowerCase())) {
+                    continue;
+                }
+                List<String> needed = new ArrayList<>(descriptor.getDepend());
+                needed.addAll(descriptor.getSoftDepend());
+                for (String name : needed) {
+                    if (lazyNames.remove(name.toLowerCase())) {
+                        getLogger().info(name + " se cargará al arrancar porque lo necesita " + descriptor.getName() + ".");
+                        changed = true;
+                    }
+                }
             }
+            for (SubPluginDescriptor descriptor : descriptors) {
+                if (!lazyNames.contains(descriptor.getName().toLowerCase())) {
+                    continue;
+                }
+                for (String name : descriptor.getLoadBefore()) {
+                    if (!lazyNames.contains(name.toLowerCase())) {
+                        lazyNames.remove(descriptor.getName().toLowerCase());
+                        getLogger().info(descriptor.getName() + " se cargará al arrancar porque debe cargarse antes que " + name + ".");
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return lazyNames;
+    }
 
-            // Leer el plugin.yml para verificar información básica
-            InputStream in = jar.getInputStream(pluginYml);
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(new InputStreamReader(in));
+    /**
+     * Carga y habilita un sub-plugin en espera. Se ejecuta en el hilo principal.
+     */
+    private Plugin activateLazyPlugin(SubPluginDescriptor descriptor) throws InvalidPluginException, InvalidDescriptionException {
+        long startTime = System.currentTimeMillis();
+        Plugin plugin = loadPlugin(descriptor);
+        if (plugin != null) {
+            Bukkit.getPluginManager().enablePlugin(plugin);
+            hotSwapper.syncCommands();
+            metrics.observe("pluginloader_lazy_activation_seconds", "Tiempo de activación (carga y habilitación) de los sub-plugins lazy",
+                    System.currentTimeMillis() - startTime, "plugin", plugin.getName());
+            getLogger().info("Sub-plugin activado: " + plugin.getName() + " en " + (System.currentTimeMillis() - startTime) + " ms.");
+        }
+        return plugin;
+    }
 
-            String pluginName = config.getString("name");
-            String mainClass = config.getString("main");
+    /**
+     * Activa un sub-plugin en espera. Se ejecuta en el hilo principal.
+     * @return true si se activó
+     */
+    public boolean activateSubPlugin(String name) {
+        return lazySubPlugins != null && lazySubPlugins.activate(name) != null;
+    }
 
-            if (pluginName == null || mainClass == null) {
-                jar.close();
-                throw new InvalidPluginException("El plugin.yml no contiene información necesaria");
-            }
+    /**
+     * @return Nombres de los sub-plugins en espera
+     */
+    public Set<String> getLazySubPluginNames() {
+        return lazySubPlugins != null ? lazySubPlugins.getPendingNames() : Collections.emptySet();
+    }
 
-            jar.close();
+    /**
+     * Busca las bibliotecas idénticas en varios sub-plugins e instala el classloader que las carga una sola vez.
+     * Informa de las bibliotecas que aparecen con versiones distintas.
+     */
+    private void setUpSharedLibraries(List<SubPluginDescriptor> descriptors) {
+        long startTime = System.currentTimeMillis();
+        ClassLoader serverLoader = getPluginLoader().getClass().getClassLoader();
+        SharedLibraries libraries = new SharedLibraries(serverLoader);
+        try {
+            libraries.analyze(descriptors);
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "No se pudieron analizar las bibliotecas de los sub-plugins. Cada uno cargará las suyas.", e);
+            return;
+        }
 
-            // Verificar si el plugin ya está cargado
-            Plugin existingPlugin = Bukkit.getPluginManager().getPlugin(pluginName);
-            if (existingPlugin != null) {
-                getLogger().info("El plugin " + pluginName + " ya está cargado. No se cargará de nuevo.");
-                return false;
-            }
+        for (SharedLibraries.Conflict conflict : libraries.getConflicts()) {
+            getLogger().warning("Conflicto de versiones de " + conflict.getName() + ": " + String.join("; ", conflict.getVariants())
+                    + ". No se compartirá, pero Bukkit puede dar a un plugin la copia de otro: conviene reubicarla (relocate) o usar la misma versión.");
+        }
+        List<SharedLibraries.Library> shared = libraries.getShared();
+        if (shared.isEmpty()) {
+            getLogger().info("No hay bibliotecas idénticas en varios sub-plugins.");
+            return;
+        }
 
-            // Modificamos la carga del plugin para usar la carpeta de configuración principal
-            // Primero cargamos el plugin
-            Plugin plugin = Bukkit.getPluginManager().loadPlugin(jarFile);
-            if (plugin != null) {
-                // Preparamos el directorio de configuraciones para este plugin en la carpeta principal de plugins
-                File pluginConfigDir = new File(getDataFolder().getParentFile(), plugin.getName());
-                if (!pluginConfigDir.exists()) {
-                    pluginConfigDir.mkdirs();
-                    getLogger().info("Creado directorio de configuración para " + plugin.getName() + " en: " + pluginConfigDir.getAbsolutePath());
-                }
+        SharedLibraryClassLoader loader;
+        try {
+            loader = new SharedLibraryClassLoader(libraries, serverLoader);
+            loader.install(getPluginLoader());
+        } catch (IOException | ReflectiveOperationException e) {
+            getLogger().log(Level.WARNING, "No se pudo instalar el classloader de bibliotecas compartidas. Cada sub-plugin cargará las suyas.", e);
+            return;
+        }
+        sharedLibraries = libraries;
+        sharedLibraryLoader = loader;
+
+        long avoidedClasses = 0;
+        for (SharedLibraries.Library library : shared) {
+            avoidedClasses += (long) library.getClassCount() * (library.getJars().size() - 1);
+            getLogger().info("Biblioteca compartida: " + library.getName() + (library.getVersion() != null ? " " + library.getVersion() : "")
+                    + " (" + library.getClassCount() + " clases, en " + library.getJars().size() + " sub-plugins)");
+        }
+        getLogger().info(shared.size() + " bibliotecas compartidas entre sub-plugins; se evitan hasta " + avoidedClasses
+                + " copias de clases. Análisis en " + (System.currentTimeMillis() - startTime) + " ms.");
+    }
 
-                // Establecemos el datafolder en la carpeta principal de plugins antes de inicializar
-                try {
-                    // Usamos reflexión para acceder al campo dataFolder que es protected en JavaPlugin
-                    java.lang.reflect.Field dataFolderField = JavaPlugin.class.getDeclaredField("dataFolder");
-                    dataFolderField.setAccessible(true);
-                    dataFolderField.set(plugin, pluginConfigDir);
-                } catch (Exception e) {
-                    getLogger().log(Level.WARNING, "No se pudo establecer la carpeta de datos para " + plugin.getName(), e);
-                }
-
-                // Ahora inicializamos el plugin
-                plugin.onLoad();
-                //Bukkit.getPluginManager().enablePlugin(plugin);
-                getLogger().info("Sub-plugin cargado con éxito: " + plugin.getName() + " v" + plugin.getDescription().getVersion());
-                getLogger().info("Configuraciones para " + plugin.getName() + " en: " + pluginConfigDir.getAbsolutePath());
-                return true;
-            } else {
-                getLogger().warning("No se pudo cargar el sub-plugin: " + jarFile.getName());
-                return false;
+    /**
+     * Carga un sub-plugin con su carpeta de datos en la carpeta principal de plugins
+     * @return El plugin cargado, o null si no se cargó
+     */
+    private Plugin loadPlugin(SubPluginDescriptor descriptor) throws InvalidPluginException, InvalidDescriptionException {
+        File jarFile = descriptor.getFile();
+        String pluginName = descriptor.getName();
+
+        // Verificar si el plugin ya está cargado
+        Plugin existingPlugin = Bukkit.getPluginManager().getPlugin(pluginName);
+        if (existingPlugin != null) {
+            getLogger().info("El plugin " + pluginName + " ya está cargado. No se cargará de nuevo.");
+            return null;
+        }
+
+        // Modificamos la carga del plugin para usar la carpeta de configuración principal
+        // Primero cargamos el plugin
+        long startTime = System.currentTimeMillis();
+        Plugin plugin = Bukkit.getPluginManager().loadPlugin(jarFile);
+        if (plugin != null) {
+            // Preparamos el directorio de configuraciones para este plugin en la carpeta principal de plugins
+            File pluginConfigDir = new File(getDataFolder().getParentFile(), plugin.getName());
+            if (!pluginConfigDir.exists()) {
+                pluginConfigDir.mkdirs();
+                getLogger().info("Creado directorio de configuración para " + plugin.getName() + " en: " + pluginConfigDir.getAbsolutePath());
             }
 
-        } catch (IOException e) {
-            throw new InvalidPluginException("Error al acceder al archivo JAR: " + e.getMessage());
+            // Establecemos el datafolder en la carpeta principal de plugins antes de inicializar
+            try {
+                // Usamos reflexión para acceder al campo dataFolder que es protected en JavaPlugin
+                java.lang.reflect.Field dataFolderField = JavaPlugin.class.getDeclaredField("dataFolder");
+                dataFolderField.setAccessible(true);
+                dataFolderField.set(plugin, pluginConfigDir);
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "No se pudo establecer la carpeta de datos para " + plugin.getName(), e);
+            }
+
+            // Ahora inicializamos el plugin
+            plugin.onLoad();
+            metrics.observe("pluginloader_subplugin_load_seconds", "Tiempo de carga (loadPlugin + onLoad) de cada sub-plugin",
+                    System.currentTimeMillis() - startTime, "plugin", plugin.getName());
+            //Bukkit.getPluginManager().enablePlugin(plugin);
+            getLogger().info("Sub-plugin cargado con éxito: " + plugin.getName() + " v" + plugin.getDescription().getVersion());
+            getLogger().info("Configuraciones para " + plugin.getName() + " en: " + pluginConfigDir.getAbsolutePath());
+            loadedSubPlugins.add(plugin.getName());
+            return plugin;
+        } else {
+            getLogger().warning("No se pudo cargar el sub-plugin: " + jarFile.getName());
+            return null;
         }
     }
-}
\ No newline at end of file
+}
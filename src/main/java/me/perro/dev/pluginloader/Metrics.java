@@ -0,0 +1,177 @@
+package me.perro.dev.pluginloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores e histogramas de las distintas fases (API, descargas, extracción, carga de sub-plugins).
+ * Se pueden consultar con /pluginloader stats o exportar en el formato de texto de Prometheus.
+ * Todas las operaciones son seguras entre hilos y no bloquean.
+ */
+public class Metrics {
+    // Límites superiores de los cubos de los histogramas, en milisegundos
+    private static final long[] BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000};
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Suma una cantidad a un contador
+     * @param name Nombre de la métrica (formato Prometheus, terminado en _total)
+     * @param help Descripción de la métrica
+     * @param labels Pares nombre, valor de las etiquetas
+     */
+    public void increment(String name, String help, long amount, String... labels) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, false));
+        ((LongAdder) family.series.computeIfAbsent(labelKey(labels), k -> new LongAdder())).add(amount);
+    }
+
+    /**
+     * Registra una duración en un histograma
+     * @param name Nombre de la métrica (formato Prometheus, terminado en _seconds)
+     * @param help Descripción de la métrica
+     * @param millis Duración en milisegundos
+     * @param labels Pares nombre, valor de las etiquetas
+     */
+    public void observe(String name, String help, long millis, String... labels) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, true));
+        ((Histogram) family.series.computeIfAbsent(labelKey(labels), k -> new Histogram())).observe(millis);
+    }
+
+    /**
+     * @return Todas las métricas en el formato de texto de Prometheus (versión 0.0.4)
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(family.histogram ? " histogram\n" : " counter\n");
+
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                if (!family.histogram) {
+                    out.append(family.name).append(braces(labels)).append(' ').append(((LongAdder) series.getValue()).sum()).append('\n');
+                    continue;
+                }
+
+                Histogram histogram = (Histogram) series.getValue();
+                long cumulative = 0;
+                for (int i = 0; i < BUCKETS.length; i++) {
+                    cumulative += histogram.buckets[i].sum();
+                    out.append(family.name).append("_bucket").append(braces(join(labels, "le=\"" + BUCKETS[i] / 1000.0 + "\"")))
+                            .append(' ').append(cumulative).append('\n');
+                }
+                long count = histogram.count.sum();
+                out.append(family.name).append("_bucket").append(braces(join(labels, "le=\"+Inf\""))).append(' ').append(count).append('\n');
+                out.append(family.name).append("_sum").append(braces(labels)).append(' ').append(histogram.sumMillis.sum() / 1000.0).append('\n');
+                out.append(family.name).append("_count").append(braces(labels)).append(' ').append(count).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return Resumen legible de todas las métricas, una línea por serie
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (Family family : families.values()) {
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String name = family.name + braces(series.getKey());
+                if (!family.histogram) {
+                    lines.add(name + " = " + ((LongAdder) series.getValue()).sum());
+                    continue;
+                }
+
+                Histogram histogram = (Histogram) series.getValue();
+                long count = histogram.count.sum();
+                if (count == 0) {
+                    continue;
+                }
+                lines.add(String.format("%s: n=%d, media=%d ms, p95<=%s, máx=%d ms", name, count,
+                        histogram.sumMillis.sum() / count, histogram.percentileBound(0.95), histogram.max.get()));
+            }
+        }
+        return lines;
+    }
+
+    private static String labelKey(String... labels) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return key.toString();
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String join(String labels, String extra) {
+        return labels.isEmpty() ? extra : labels + "," + extra;
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    // Clase interna con las series de una métrica (una por combinación de etiquetas)
+    private static class Family {
+        final String name;
+        final String help;
+        final boolean histogram;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, boolean histogram) {
+            this.name = name;
+            this.help = help;
+            this.histogram = histogram;
+        }
+    }
+
+    // Clase interna con un histograma de cubos fijos
+    private static class Histogram {
+        final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        final LongAdder count = new LongAdder();
+        final LongAdder sumMillis = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void observe(long millis) {
+            count.increment();
+            sumMillis.add(millis);
+            max.accumulate(millis);
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (millis <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        // Límite superior del cubo donde cae el percentil indicado
+        String percentileBound(double percentile) {
+            long target = (long) Math.ceil(count.sum() * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                if (cumulative >= target) {
+                    return BUCKETS[i] + " ms";
+                }
+            }
+            return "+Inf";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package me.perro.dev.pluginloader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sigue el límite de peticiones de la API de GitHub a partir de las cabeceras X-RateLimit-* y Retry-After.
+ * GitHub cuenta el límite por token (o por IP sin token), así que se guarda un estado por token.
+ */
+public class RateLimitTracker {
+    // Por debajo de esta fracción del límite se empieza a espaciar las comprobaciones
+    private static final double SLOW_DOWN_FRACTION = 0.25;
+    private static final double MAX_SLOW_DOWN = 8.0;
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final int reserve;
+
+    /**
+     * @param reserve Peticiones que se dejan sin usar antes del reinicio del límite (para comprobaciones manuales)
+     */
+    public RateLimitTracker(int reserve) {
+        this.reserve = Math.max(0, reserve);
+    }
+
+    /**
+     * Actualiza el estado con las cabeceras de una respuesta de la API
+     * @param token Token usado en la petición (vacío o null si no se usó)
+     */
+    public void update(String token, HttpTransport.Response response) {
+        Budget budget = budgets.computeIfAbsent(key(token), k -> new Budget());
+        long now = System.currentTimeMillis();
+
+        String remaining = response.getHeader("X-RateLimit-Remaining");
+        String limit = response.getHeader("X-RateLimit-Limit");
+        String reset = response.getHeader("X-RateLimit-Reset");
+        String retryAfter = response.getHeader("Retry-After");
+
+        synchronized (budget) {
+            try {
+                if (remaining != null) {
+                    budget.remaining = Integer.parseInt(remaining.trim());
+                }
+                if (limit != null) {
+                    budget.limit = Integer.parseInt(limit.trim());
+                }
+                if (reset != null) {
+                    budget.resetAt = Long.parseLong(reset.trim()) * 1000;
+                }
+                if (retryAfter != null) {
+                    // Límite secundario (abuso): GitHub indica cuántos segundos esperar
+                    budget.blockedUntil = Math.max(budget.blockedUntil, now + Long.parseLong(retryAfter.trim()) * 1000);
+                }
+            } catch (NumberFormatException ignored) {
+                // Cabeceras mal formadas: se conserva el estado anterior
+            }
+        }
+    }
+
+    /**
+     * @return El momento (en milisegundos) hasta el que no se debe hacer ninguna comprobación automática con este token,
+     * o 0 si se puede comprobar ya
+     */
+    public long blockedUntil(String token) {
+        Budget budget = budgets.get(key(token));
+        if (budget == null) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (budget) {
+            if (budget.blockedUntil > now) {
+                return budget.blockedUntil;
+            }
+            if (budget.remaining >= 0 && budget.remaining <= reserve && budget.resetAt > now) {
+                return budget.resetAt;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Factor por el que multiplicar el intervalo de comprobación para no agotar el límite antes del reinicio.
+     * Es 1 mientras quede más de una cuarta parte del límite y crece a medida que se acerca a la reserva.
+     */
+    public double slowDownFactor(String token) {
+        Budget budget = budgets.get(key(token));
+        if (budget == null) {
+            return 1.0;
+        }
+
+        synchronized (budget) {
+            if (budget.remaining < 0 || budget.limit <= 0 || budget.resetAt <= System.currentTimeMillis()) {
+                return 1.0;
+            }
+            double threshold = budget.limit * SLOW_DOWN_FRACTION;
+            if (budget.remaining >= threshold) {
+                return 1.0;
+            }
+            double available = Math.max(1, budget.remaining - reserve);
+            return Math.min(MAX_SLOW_DOWN, threshold / available);
+        }
+    }
+
+    /**
+     * @return Peticiones restantes con este token según la última respuesta, o -1 si no se sabe
+     */
+    public int getRemaining(String token) {
+        Budget budget = budgets.get(key(token));
+        if (budget == null) {
+            return -1;
+        }
+        synchronized (budget) {
+            return budget.remaining;
+        }
+    }
+
+    private static String key(String token) {
+        return token != null ? token : "";
+    }
+
+    // Clase interna con el estado del límite para un token
+    private static class Budget {
+        int remaining = -1;
+        int limit = -1;
+        long resetAt;
+        long blockedUntil;
+    }
+}
@@ -0,0 +1,154 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Configuración validada e inmutable de un repositorio de github.repositories.
+ * El patrón del artefacto se compila una sola vez al cargar la configuración.
+ */
+public final class RepositorySpec {
+    private final String key;
+    private final String owner;
+    private final String repo;
+    private final String workflow;
+    private final String branch;
+    private final String artifactPattern;
+    private final Pattern artifactMatcher;
+    private final String token;
+    private final boolean autoUpdate;
+
+    private RepositorySpec(String key, String owner, String repo, String workflow, String branch,
+                           String artifactPattern, String token, boolean autoUpdate) {
+        this.key = key;
+        this.owner = owner;
+        this.repo = repo;
+        this.workflow = workflow;
+        this.branch = branch;
+        this.artifactPattern = artifactPattern;
+        this.artifactMatcher = compileGlob(artifactPattern);
+        this.token = token;
+        this.autoUpdate = autoUpdate;
+    }
+
+    /**
+     * Lee y valida la configuración de un repositorio
+     * @throws IllegalArgumentException Si falta algún dato obligatorio
+     */
+    public static RepositorySpec parse(String key, ConfigurationSection section) {
+        if (section == null) {
+            throw new IllegalArgumentException("Configuración incompleta para el repositorio: " + key);
+        }
+
+        String owner = section.getString("owner");
+        String repo = section.getString("repo");
+        String workflow = section.getString("workflow");
+        if (isBlank(owner) || isBlank(repo) || isBlank(workflow)) {
+            throw new IllegalArgumentException("Configuración incompleta para el repositorio: " + key + " (hacen falta owner, repo y workflow)");
+        }
+
+        return new RepositorySpec(key, owner, repo, workflow,
+                section.getString("branch", "main"),
+                section.getString("artifact", "*.jar"),
+                section.getString("token", ""),
+                section.getBoolean("auto-update"));
+    }
+
+    /**
+     * Lee todos los repositorios de la sección. Los que no son válidos se descartan e informa de ellos en el log.
+     * @param repositories Sección github.repositories (puede ser null)
+     * @return Los repositorios válidos, en el orden de la configuración (mapa inmutable)
+     */
+    public static Map<String, RepositorySpec> loadAll(ConfigurationSection repositories, Logger logger) {
+        if (repositories == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, RepositorySpec> specs = new LinkedHashMap<>();
+        for (String key : repositories.getKeys(false)) {
+            try {
+                specs.put(key, parse(key, repositories.getConfigurationSection(key)));
+            } catch (IllegalArgumentException e) {
+                logger.warning(e.getMessage());
+            }
+        }
+        return Collections.unmodifiableMap(specs);
+    }
+
+    // Patrón con * (cualquier texto) y ? (un carácter); el resto se toma literalmente
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * @return true si el nombre del artefacto coincide con el patrón configurado
+     */
+    public boolean matchesArtifact(String name) {
+        return artifactMatcher.matcher(name).matches();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return Identidad real del repositorio (owner/repo, workflow, rama y patrón del artefacto), que no depende
+     * de la clave que se le dé en la configuración de cada servidor
+     */
+    public String getIdentity() {
+        return owner.toLowerCase() + "/" + repo.toLowerCase() + "/" + workflow + "/" + branch + "/" + artifactPattern;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getWorkflow() {
+        return workflow;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getArtifactPattern() {
+        return artifactPattern;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isAutoUpdate() {
+        return autoUpdate;
+    }
+}
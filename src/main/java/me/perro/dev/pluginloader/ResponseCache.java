@@ -0,0 +1,276 @@
+package me.perro.dev.pluginloader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caché en disco de las respuestas de la API de GitHub, indexada por URL.
+ * Guarda el ETag y el Last-Modified de cada respuesta para poder hacer peticiones condicionales
+ * y servir el cuerpo guardado cuando GitHub responde 304 (Not Modified).
+ */
+public class ResponseCache {
+    private final File cacheFolder;
+    private final Logger logger;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResponseCache(File dataFolder, Logger logger) {
+        this.cacheFolder = new File(dataFolder, "cache");
+        this.logger = logger;
+
+        if (!cacheFolder.exists()) {
+            cacheFolder.mkdirs();
+        }
+
+        // Temporales de respuestas que no llegaron a guardarse (p. ej. por un cierre inesperado)
+        File[] tempFiles = cacheFolder.listFiles((dir, name) -> name.endsWith(".tmp"));
+        if (tempFiles != null) {
+            for (File tempFile : tempFiles) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Obtiene la entrada guardada para una URL
+     * @param url URL de la API
+     * @return La entrada, o null si la URL no está en caché
+     */
+    public Entry get(String url) {
+        File metaFile = metaFile(url);
+        if (!metaFile.exists()) {
+            return null;
+        }
+
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(metaFile)) {
+            meta.load(in);
+        } catch (IOException e) {
+            logger.warning("No se pudo leer la caché de " + url + ": " + e.getMessage());
+            return null;
+        }
+
+        // Protección ante colisiones del hash
+        if (!url.equals(meta.getProperty("url"))) {
+            return null;
+        }
+
+        return new Entry(url, meta.getProperty("etag"), meta.getProperty("last-modified"));
+    }
+
+    /**
+     * Empieza a guardar una respuesta en la caché. Solo se guarda si tiene ETag o Last-Modified,
+     * ya que sin ellos no se puede hacer una petición condicional.
+     * El cuerpo se escribe a medida que se lee de la red, sin tenerlo entero en memoria.
+     * @return El cuerpo pendiente de guardar, o null si la respuesta no se puede guardar
+     */
+    public PendingBody begin(String url, String etag, String lastModified) {
+        if (etag == null && lastModified == null) {
+            return null;
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        if (etag != null) {
+            meta.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty("last-modified", lastModified);
+        }
+
+        try {
+            return new PendingBody(url, meta);
+        } catch (IOException e) {
+            logger.warning("No se pudo guardar la caché de " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Elimina una URL de la caché
+     */
+    public synchronized void remove(String url) {
+        metaFile(url).delete();
+        bodyFile(url).delete();
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private File metaFile(String url) {
+        return new File(cacheFolder, hash(url) + ".properties");
+    }
+
+    private File bodyFile(String url) {
+        return new File(cacheFolder, hash(url) + ".json");
+    }
+
+    private static String hash(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Clase interna con los validadores de una respuesta guardada
+    public class Entry {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+
+        private Entry(String url, String etag, String lastModified) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Abre el cuerpo guardado de la respuesta
+         * @return El cuerpo, o null si ya no existe en disco
+         */
+        public Reader openBody() {
+            try {
+                return new BufferedReader(new InputStreamReader(new FileInputStream(bodyFile(url)), StandardCharsets.UTF_8));
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Cuerpo de una respuesta que se está guardando mientras se lee. Hasta que se confirma con
+     * {@link #commit()}, la entrada anterior de la caché (si había) sigue siendo válida.
+     */
+    public class PendingBody {
+        private final String url;
+        private final Properties meta;
+        private final File tempFile;
+        private final Writer writer;
+
+        private PendingBody(String url, Properties meta) throws IOException {
+            this.url = url;
+            this.meta = meta;
+            // Temporal propio de esta respuesta: puede haber otra petición a la misma URL a la vez
+            this.tempFile = File.createTempFile(hash(url) + "-", ".json.tmp", cacheFolder);
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Envuelve el cuerpo que llega de la red para que todo lo que se lea se guarde también en la caché
+         */
+        public Reader tee(Reader source) {
+            return new FilterReader(source) {
+                @Override
+                public int read() throws IOException {
+                    int c = super.read();
+                    if (c != -1) {
+                        writer.write(c);
+                    }
+                    return c;
+                }
+
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        writer.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    // Lo saltado también debe quedar en la caché
+                    char[] buffer = new char[(int) Math.min(n, 8192)];
+                    int read = read(buffer, 0, buffer.length);
+                    return Math.max(read, 0);
+                }
+            };
+        }
+
+        /**
+         * Guarda el cuerpo y después los metadatos, ambos con renombrado atómico.
+         * Los dos renombrados van juntos para que el cuerpo de una respuesta no acabe con el ETag de otra.
+         */
+        public void commit() {
+            File tempMetaFile = null;
+            try {
+                writer.close();
+                tempMetaFile = File.createTempFile(hash(url) + "-", ".properties.tmp", cacheFolder);
+                try (OutputStream out = new FileOutputStream(tempMetaFile)) {
+                    meta.store(out, null);
+                }
+                synchronized (ResponseCache.this) {
+                    Files.move(tempFile.toPath(), bodyFile(url).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.move(tempMetaFile.toPath(), metaFile(url).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                logger.warning("No se pudo guardar la caché de " + url + ": " + e.getMessage());
+                tempFile.delete();
+                if (tempMetaFile != null) {
+                    tempMetaFile.delete();
+                }
+            }
+        }
+
+        /**
+         * Descarta el cuerpo (la respuesta no se leyó entera o no era válida)
+         */
+        public void abort() {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Se borra igualmente
+            }
+            tempFile.delete();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package me.perro.dev.pluginloader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Caché compartida por varias instancias del servidor en una carpeta común (un volumen local o NFS).
+ * Para cada repositorio, una sola instancia consulta la API de GitHub y publica el resultado; para cada artefacto,
+ * una sola lo descarga y publica los JARs extraídos. Las demás reutilizan lo publicado o esperan a que termine.
+ * <p>
+ * Quién hace cada trabajo se decide con concesiones (leases): un archivo leases/&lt;nombre&gt;.properties con la
+ * instancia y su caducidad, que se lee y escribe con un FileLock sobre locks/&lt;nombre&gt;.lock. La instancia que
+ * la tiene la renueva mientras trabaja; si cae, su concesión caduca y otra toma el relevo, así que los relojes de
+ * las máquinas deben estar sincronizados. Todo se identifica por el repositorio real (owner/repo, workflow, rama y
+ * patrón del artefacto), no por la clave que cada servidor le da en su configuración.
+ * Todo lo publicado se escribe en un temporal y se renombra de forma atómica: nunca se lee a medias.
+ * <pre>
+ * locks/      bloqueos de cada concesión
+ * leases/     concesiones en curso
+ * results/    última comprobación de cada repositorio (ID de ejecución y sus artefactos)
+ * artifacts/  JARs de cada artefacto descargado
+ * store/      JARs por su SHA-256
+ * </pre>
+ */
+public class SharedCache {
+    private static final long POLL_MILLIS = 250;
+    // FileLock es de todo el proceso: dos instancias en la misma JVM (p. ej. en pruebas) se coordinan además con esto
+    private static final Map<String, Object> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final File locksFolder;
+    private final File leasesFolder;
+    private final File resultsFolder;
+    private final File artifactsFolder;
+    private final File storeFolder;
+    private final String instanceId;
+    private final long leaseMillis;
+    private final long resultTtlMillis;
+    private final Logger logger;
+
+    // Renueva las concesiones de esta instancia mientras dura su trabajo
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PluginLoader-SharedCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder sharedChecks = new LongAdder();
+    private final LongAdder ownChecks = new LongAdder();
+    private final LongAdder sharedArtifacts = new LongAdder();
+    private final LongAdder ownArtifacts = new LongAdder();
+
+    /**
+     * @param instanceId Identificador único de esta instancia
+     * @param leaseMillis Tiempo sin renovar tras el que caduca una concesión (la de una instancia caída)
+     * @param resultTtlMillis Tiempo durante el que las demás instancias reutilizan una comprobación
+     */
+    public SharedCache(File directory, String instanceId, long leaseMillis, long resultTtlMillis, Logger logger) throws IOException {
+        this.locksFolder = new File(directory, "locks");
+        this.leasesFolder = new File(directory, "leases");
+        this.resultsFolder = new File(directory, "results");
+        this.artifactsFolder = new File(directory, "artifacts");
+        this.storeFolder = new File(directory, "store");
+        this.instanceId = instanceId;
+        this.leaseMillis = leaseMillis;
+        this.resultTtlMillis = resultTtlMillis;
+        this.logger = logger;
+
+        for (File folder : new File[]{locksFolder, leasesFolder, resultsFolder, artifactsFolder, storeFolder}) {
+            if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+                throw new IOException("No se pudo crear la carpeta " + folder.getPath());
+            }
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * Intenta obtener la concesión de un trabajo
+     * @return La concesión, que debe cerrarse al terminar, o null si otra instancia la tiene
+     */
+    public Lease tryLease(String name) throws IOException {
+        String safe = fileKey(name);
+        File leaseFile = new File(leasesFolder, safe + ".properties");
+        return withLock(safe, () -> {
+            Properties lease = load(leaseFile);
+            if (lease != null && !instanceId.equals(lease.getProperty("owner")) && !isExpired(lease)) {
+                return null;
+            }
+            Properties claimed = new Properties();
+            claimed.setProperty("owner", instanceId);
+            claimed.setProperty("expires", String.valueOf(System.currentTimeMillis() + leaseMillis));
+            store(claimed, leaseFile);
+            Lease granted = new Lease(safe, leaseFile);
+            long period = Math.max(1, leaseMillis / 3);
+            granted.renewal = heartbeat.scheduleWithFixedDelay(granted::renew, period, period, TimeUnit.MILLISECONDS);
+            activeLeases.add(granted);
+            return granted;
+        });
+    }
+
+    /**
+     * @return true si otra instancia tiene una concesión vigente para ese trabajo
+     */
+    public boolean isLeasedByOther(String name) {
+        Properties lease = load(new File(leasesFolder, fileKey(name) + ".properties"));
+        return lease != null && !instanceId.equals(lease.getProperty("owner")) && !isExpired(lease);
+    }
+
+    /**
+     * @return La última comprobación del repositorio si es reciente, o null
+     */
+    public CheckResult getResult(String identity) {
+        Properties properties = load(new File(resultsFolder, fileKey(identity) + ".properties"));
+        if (properties == null || !identity.equals(properties.getProperty("identity"))) {
+            return null;
+        }
+        try {
+            long checkedAt = Long.parseLong(properties.getProperty("checkedAt"));
+            if (System.currentTimeMillis() - checkedAt > resultTtlMillis) {
+                return null;
+            }
+            String runId = properties.getProperty("runId", "");
+            List<GitHubResponses.Artifact> artifacts = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("artifacts", "0"));
+            for (int i = 0; i < count; i++) {
+                String prefix = "artifact." + i + ".";
+                artifacts.add(new GitHubResponses.Artifact(Long.parseLong(properties.getProperty(prefix + "id")),
+                        properties.getProperty(prefix + "name"), properties.getProperty(prefix + "url"),
+                        Long.parseLong(properties.getProperty(prefix + "size", "-1"))));
+            }
+            sharedChecks.increment();
+            return new CheckResult(runId.isEmpty() ? null : Long.valueOf(runId), artifacts, properties.getProperty("instance"));
+        } catch (RuntimeException e) {
+            logger.warning("Comprobación compartida de " + identity + " no válida: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Publica el resultado de una comprobación para las demás instancias
+     * @param runId Última ejecución del workflow, o null si no hay ninguna
+     */
+    public CheckResult putResult(String identity, Long runId, List<GitHubResponses.Artifact> artifacts) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("identity", identity);
+        properties.setProperty("instance", instanceId);
+        properties.setProperty("checkedAt", String.valueOf(System.currentTimeMillis()));
+        properties.setProperty("runId", runId != null ? String.valueOf(runId) : "");
+        properties.setProperty("artifacts", String.valueOf(artifacts.size()));
+        for (int i = 0; i < artifacts.size(); i++) {
+            GitHubResponses.Artifact artifact = artifacts.get(i);
+            String prefix = "artifact." + i + ".";
+            properties.setProperty(prefix + "id", String.valueOf(artifact.getId()));
+            properties.setProperty(prefix + "name", artifact.getName());
+            properties.setProperty(prefix + "url", artifact.getDownloadUrl());
+            properties.setProperty(prefix + "size", String.valueOf(artifact.getSize()));
+        }
+        store(properties, new File(resultsFolder, fileKey(identity) + ".properties"));
+        ownChecks.increment();
+        return new CheckResult(runId, artifacts, instanceId);
+    }
+
+    /**
+     * Espera a que la instancia que tiene la concesión publique la comprobación del repositorio
+     * @param leaseName Concesión de la comprobación
+     * @return El resultado, o null si la concesión se libera o caduca sin resultado, o se agota la espera
+     */
+    public CheckResult awaitResult(String identity, String leaseName, long timeoutMillis) throws InterruptedIOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            CheckResult result = getResult(identity);
+            if (result != null) {
+                return result;
+            }
+            if (!isLeasedByOther(leaseName) || System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+            sleep();
+        }
+    }
+
+    /**
+     * Copia a la carpeta los JARs publicados de un artefacto, comprobando su SHA-256
+     * @return Los JARs copiados, o null si el artefacto no está publicado o falta o no coincide alguno
+     */
+    public List<JarExtractor.ExtractedJar> copyArtifact(String identity, long artifactId, File destFolder) throws IOException {
+        Properties manifest = load(artifactManifest(identity, artifactId));
+        if (manifest == null || !identity.equals(manifest.getProperty("identity"))) {
+            return null;
+        }
+        // Un manifiesto sin JARs o con un número no válido se trata como si no estuviera publicado
+        int count = parseInt(manifest.getProperty("files"));
+        if (count <= 0) {
+            return null;
+        }
+        List<JarExtractor.ExtractedJar> jars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = manifest.getProperty("file." + i + ".name");
+            String sha256 = manifest.getProperty("file." + i + ".sha256");
+            File source = new File(storeFolder, sha256 + ".jar");
+            if (name == null || sha256 == null || !source.isFile()) {
+                return null;
+            }
+            JarExtractor.ExtractedJar jar = copyVerified(source, name, sha256, destFolder);
+            if (jar == null) {
+                logger.warning("El JAR compartido " + source.getName() + " está dañado. Se descargará el artefacto de " + identity + ".");
+                return null;
+            }
+            jars.add(jar);
+        }
+        sharedArtifacts.increment();
+        return jars;
+    }
+
+    /**
+     * Espera a que la instancia que tiene la concesión publique un artefacto y lo copia
+     * @param leaseName Concesión de la descarga
+     * @param timeoutMillis Tiempo máximo de espera: la concesión se renueva aunque la descarga se haya atascado
+     * @return Los JARs copiados, o null si la concesión se libera o caduca sin publicarlo, o se agota la espera
+     */
+    public List<JarExtractor.ExtractedJar> awaitArtifact(String identity, long artifactId, String leaseName,
+                                                         File destFolder, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            List<JarExtractor.ExtractedJar> jars = copyArtifact(identity, artifactId, destFolder);
+            if (jars != null) {
+                return jars;
+            }
+            if (!isLeasedByOther(leaseName) || System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+            sleep();
+        }
+    }
+
+    /**
+     * Publica los JARs validados de un artefacto para las demás instancias
+     * @param store Almacén local donde ya están los JARs
+     */
+    public void putArtifact(String identity, long artifactId, List<JarExtractor.ExtractedJar> jars, ArtifactStore store) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("identity", identity);
+        manifest.setProperty("instance", instanceId);
+        manifest.setProperty("files", String.valueOf(jars.size()));
+        for (int i = 0; i < jars.size(); i++) {
+            JarExtractor.ExtractedJar jar = jars.get(i);
+            File target = new File(storeFolder, jar.getSha256() + ".jar");
+            if (!target.isFile() || target.length() != jar.getSize()) {
+                File tempFile = new File(storeFolder, jar.getSha256() + ".jar." + safeName(instanceId) + ".tmp");
+                Files.copy(store.getFile(jar.getSha256()).toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            manifest.setProperty("file." + i + ".name", jar.getName());
+            manifest.setProperty("file." + i + ".sha256", jar.getSha256());
+        }
+        store(manifest, artifactManifest(identity, artifactId));
+        ownArtifacts.increment();
+    }
+
+    /**
+     * Elimina los artefactos publicados hace más del tiempo indicado y los JARs que ya no usa ningún artefacto
+     * @return Número de archivos eliminados
+     */
+    public int cleanUp(long maxAgeMillis) {
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        int removed = 0;
+        Set<String> referenced = new HashSet<>();
+        File[] manifests = artifactsFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (manifests != null) {
+            for (File manifestFile : manifests) {
+                if (manifestFile.lastModified() < cutoff && manifestFile.delete()) {
+                    removed++;
+                    continue;
+                }
+                Properties manifest = load(manifestFile);
+                if (manifest != null) {
+                    int count = parseInt(manifest.getProperty("files"));
+                    for (int i = 0; i < count; i++) {
+                        referenced.add(manifest.getProperty("file." + i + ".sha256") + ".jar");
+                    }
+                }
+            }
+        }
+        // Los JARs recientes pueden ser de un artefacto que otra instancia todavía está publicando
+        File[] jars = storeFolder.listFiles();
+        if (jars != null) {
+            for (File jar : jars) {
+                if (!referenced.contains(jar.getName()) && jar.lastModified() < cutoff && jar.delete()) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Libera las concesiones que sigan abiertas y deja de renovarlas (al deshabilitar el plugin)
+     */
+    public void close() {
+        for (Lease lease : activeLeases) {
+            try {
+                lease.close();
+            } catch (IOException e) {
+                logger.fine("No se pudo liberar la concesión " + lease.safe + ": " + e.getMessage());
+            }
+        }
+        heartbeat.shutdownNow();
+    }
+
+    /**
+     * @return Resumen para /pluginloader stats
+     */
+    public String summary() {
+        return "Caché compartida (" + instanceId + "): comprobaciones " + sharedChecks.sum() + " reutilizadas y "
+                + ownChecks.sum() + " propias; artefactos " + sharedArtifacts.sum() + " reutilizados y " + ownArtifacts.sum() + " publicados";
+    }
+
+    private File artifactManifest(String identity, long artifactId) {
+        return new File(artifactsFolder, fileKey(identity) + "-" + artifactId + ".properties");
+    }
+
+    private JarExtractor.ExtractedJar copyVerified(File source, String name, String sha256, File destFolder) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        CRC32 crc = new CRC32();
+        File outFile = JarExtractor.uniqueFile(destFolder, name);
+        long size = 0;
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(outFile)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        }
+        if (!JarExtractor.toHex(digest.digest()).equals(sha256)) {
+            outFile.delete();
+            return null;
+        }
+        return new JarExtractor.ExtractedJar(outFile, name, sha256, crc.getValue(), size);
+    }
+
+    private <T> T withLock(String safe, LockedAction<T> action) throws IOException {
+        File lockFile = new File(locksFolder, safe + ".lock");
+        Object localLock = LOCAL_LOCKS.computeIfAbsent(lockFile.getAbsolutePath(), path -> new Object());
+        synchronized (localLock) {
+            try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private static boolean isExpired(Properties lease) {
+        try {
+            return Long.parseLong(lease.getProperty("expires")) < System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Properties load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            // Borrado entre la comprobación y la lectura
+            return null;
+        }
+    }
+
+    private void store(Properties properties, File file) throws IOException {
+        File tempFile = new File(file.getPath() + "." + safeName(instanceId) + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void sleep() throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido mientras se esperaba a otra instancia");
+        }
+    }
+
+    static String safeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    // Nombre de archivo para una identidad o concesión: legible y con un hash para que dos distintas no coincidan
+    static String fileKey(String name) {
+        String readable = safeName(name);
+        if (readable.length() > 64) {
+            readable = readable.substring(0, 64);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return readable + "-" + JarExtractor.toHex(hash).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Concesión de un trabajo a esta instancia. Se renueva sola cada tercio de su duración mientras está abierta;
+     * al cerrarla (al terminar o fallar el trabajo) se libera, si sigue siendo suya.
+     */
+    public class Lease implements Closeable {
+        private final String safe;
+        private final File leaseFile;
+        private volatile ScheduledFuture<?> renewal;
+        private volatile boolean closed;
+
+        private Lease(String safe, File leaseFile) {
+            this.safe = safe;
+            this.leaseFile = leaseFile;
+        }
+
+        private void renew() {
+            try {
+                boolean kept = withLock(safe, () -> {
+                    Properties lease = load(leaseFile);
+                    if (closed) {
+                        return true;
+                    }
+                    if (lease == null || !instanceId.equals(lease.getProperty("owner"))) {
+                        return false;
+                    }
+                    lease.setProperty("expires", String.valueOf(System.currentTimeMillis() + leaseMillis));
+                    store(lease, leaseFile);
+                    return true;
+                });
+                if (!kept) {
+                    logger.warning("La concesión " + safe + " caducó y la tiene otra instancia. Puede que las dos hagan el mismo trabajo.");
+                    renewal.cancel(false);
+                }
+            } catch (IOException e) {
+                logger.warning("No se pudo renovar la concesión " + safe + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            renewal.cancel(false);
+            activeLeases.remove(this);
+            withLock(safe, () -> {
+                Properties lease = load(leaseFile);
+                if (lease != null && instanceId.equals(lease.getProperty("owner"))) {
+                    Files.deleteIfExists(leaseFile.toPath());
+                }
+                return null;
+            });
+        }
+    }
+
+    // Clase interna con una comprobación publicada: la última ejecución y sus artefactos
+    public static class CheckResult {
+        private final Long runId;
+        private final List<GitHubResponses.Artifact> artifacts;
+        private final String instance;
+
+        CheckResult(Long runId, List<GitHubResponses.Artifact> artifacts, String instance) {
+            this.runId = runId;
+            this.artifacts = artifacts;
+            this.instance = instance;
+        }
+
+        /**
+         * @return Última ejecución del workflow, o null si no hay ninguna
+         */
+        public Long getRunId() {
+            return runId;
+        }
+
+        public List<GitHubResponses.Artifact> getArtifacts() {
+            return artifacts;
+        }
+
+        /**
+         * @return Instancia que hizo la comprobación
+         */
+        public String getInstance() {
+            return instance;
+        }
+    }
+}
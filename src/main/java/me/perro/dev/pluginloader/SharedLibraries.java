@@ -0,0 +1,477 @@
+package me.perro.dev.pluginloader;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Detecta las bibliotecas incluidas (shaded) en varios sub-plugins.
+ * Una biblioteca es el conjunto de clases bajo los tres primeros segmentos de su paquete (com.zaxxer.hikari, net.kyori.adventure...).
+ * Su huella son los nombres, CRC32 y tamaños de sus clases, leídos del índice del JAR sin descomprimir nada.
+ * Se comparte si aparece en al menos dos JARs, todas las copias son idénticas y todo lo que usa está en otra biblioteca
+ * compartida, en el servidor o en ningún JAR. Si las copias no coinciden, es un conflicto de versiones y no se comparte.
+ */
+public class SharedLibraries {
+    private static final int ROOT_SEGMENTS = 3;
+
+    private final ClassLoader serverLoader;
+
+    // Bibliotecas compartidas por su raíz ("com/zaxxer/hikari/")
+    private final Map<String, Library> shared = new TreeMap<>();
+    private final List<Conflict> conflicts = new ArrayList<>();
+    // Huella de cada biblioteca compartida, para comparar JARs nuevos
+    private final Map<String, String> sharedFingerprints = new TreeMap<>();
+
+    public SharedLibraries(ClassLoader serverLoader) {
+        this.serverLoader = serverLoader;
+    }
+
+    /**
+     * Analiza los JARs de los sub-plugins. Las raíces de las clases principales (el código propio de cada plugin)
+     * nunca se comparten.
+     */
+    public void analyze(List<SubPluginDescriptor> descriptors) throws IOException {
+        shared.clear();
+        conflicts.clear();
+        sharedFingerprints.clear();
+
+        Set<String> ownRoots = new HashSet<>();
+        for (SubPluginDescriptor descriptor : descriptors) {
+            String root = rootOf(descriptor.getMain().replace('.', '/'));
+            if (root != null) {
+                ownRoots.add(root);
+            }
+        }
+
+        // Raíz -> copias de cada JAR
+        Map<String, List<Copy>> copiesByRoot = new TreeMap<>();
+        for (SubPluginDescriptor descriptor : descriptors) {
+            for (Copy copy : scanJar(descriptor.getFile())) {
+                copiesByRoot.computeIfAbsent(copy.root, k -> new ArrayList<>()).add(copy);
+            }
+        }
+
+        Map<String, List<Copy>> candidates = new TreeMap<>();
+        for (Map.Entry<String, List<Copy>> entry : copiesByRoot.entrySet()) {
+            String root = entry.getKey();
+            List<Copy> copies = entry.getValue();
+            if (copies.size() < 2 || ownRoots.contains(root)) {
+                continue;
+            }
+
+            Map<String, List<Copy>> byFingerprint = new LinkedHashMap<>();
+            for (Copy copy : copies) {
+                byFingerprint.computeIfAbsent(copy.fingerprint, k -> new ArrayList<>()).add(copy);
+            }
+            if (byFingerprint.size() > 1) {
+                conflicts.add(new Conflict(root, byFingerprint.values()));
+            } else if (serverLoader.getResource(copies.get(0).firstClass) == null) {
+                // Si el servidor ya la incluye, los plugins la toman de él y no hay nada que ganar
+                candidates.put(root, copies);
+            }
+        }
+
+        // Descartar las que usan clases de bibliotecas que no se comparten, hasta que no cambie nada
+        Map<String, Set<String>> dependencies = new TreeMap<>();
+        Set<String> rejected = new HashSet<>();
+        for (Map.Entry<String, List<Copy>> entry : candidates.entrySet()) {
+            Set<String> referencedRoots = referencedRoots(entry.getValue().get(0));
+            referencedRoots.remove(entry.getKey());
+            for (String referenced : referencedRoots) {
+                if (copiesByRoot.containsKey(referenced) && !candidates.containsKey(referenced)) {
+                    rejected.add(entry.getKey());
+                }
+            }
+            dependencies.put(entry.getKey(), referencedRoots);
+        }
+        boolean changed = !rejected.isEmpty();
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                if (!rejected.contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), rejected)) {
+                    rejected.add(entry.getKey());
+                    changed = true;
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Copy>> entry : candidates.entrySet()) {
+            if (!rejected.contains(entry.getKey())) {
+                List<Copy> copies = entry.getValue();
+                shared.put(entry.getKey(), new Library(entry.getKey(), copies));
+                sharedFingerprints.put(entry.getKey(), copies.get(0).fingerprint);
+            }
+        }
+    }
+
+    /**
+     * @return Las bibliotecas compartidas
+     */
+    public List<Library> getShared() {
+        return new ArrayList<>(shared.values());
+    }
+
+    /**
+     * @return Los conflictos de versiones encontrados
+     */
+    public List<Conflict> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return Los JARs desde los que se cargan las bibliotecas compartidas (una copia de cada una)
+     */
+    public Set<File> getSourceJars() {
+        Set<File> jars = new HashSet<>();
+        for (Library library : shared.values()) {
+            jars.add(library.getJars().get(0));
+        }
+        return jars;
+    }
+
+    /**
+     * @param className Nombre de una clase (com.foo.Bar)
+     * @return true si pertenece a una biblioteca compartida
+     */
+    public boolean isSharedClass(String className) {
+        return isSharedResource(className.replace('.', '/') + ".class");
+    }
+
+    /**
+     * @param path Ruta de un recurso (com/foo/bar.properties)
+     * @return true si pertenece a una biblioteca compartida
+     */
+    public boolean isSharedResource(String path) {
+        String root = rootOf(path);
+        return root != null && shared.containsKey(root);
+    }
+
+    /**
+     * Compara un JAR con las bibliotecas compartidas, p. ej. al recargarlo en caliente
+     * @return Las bibliotecas de las que el JAR contiene una versión distinta, con puntos (com.zaxxer.hikari)
+     */
+    public List<String> findMismatches(File jarFile) throws IOException {
+        List<String> mismatches = new ArrayList<>();
+        for (Copy copy : scanJar(jarFile)) {
+            String fingerprint = sharedFingerprints.get(copy.root);
+            if (fingerprint != null && !fingerprint.equals(copy.fingerprint)) {
+                mismatches.add(displayName(copy.root));
+            }
+        }
+        return mismatches;
+    }
+
+    // Agrupa las clases del JAR por raíz usando solo el índice del ZIP
+    private static List<Copy> scanJar(File jarFile) throws IOException {
+        Map<String, List<ZipEntry>> classesByRoot = new TreeMap<>();
+        Map<String, String> versions = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith("META-INF/maven/") && name.endsWith("/pom.properties")) {
+                    Properties pom = new Properties();
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        pom.load(in);
+                    }
+                    String groupId = pom.getProperty("groupId");
+                    String version = pom.getProperty("version");
+                    if (groupId != null && version != null) {
+                        versions.put(groupId.replace('.', '/') + "/", version);
+                    }
+                    continue;
+                }
+                if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/") || name.equals("module-info.class")) {
+                    continue;
+                }
+                String root = rootOf(name);
+                if (root != null) {
+                    classesByRoot.computeIfAbsent(root, k -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+
+        List<Copy> copies = new ArrayList<>();
+        for (Map.Entry<String, List<ZipEntry>> entry : classesByRoot.entrySet()) {
+            List<ZipEntry> classes = entry.getValue();
+            classes.sort((a, b) -> a.getName().compareTo(b.getName()));
+            MessageDigest digest = sha256();
+            List<String> classNames = new ArrayList<>(classes.size());
+            for (ZipEntry zipEntry : classes) {
+                digest.update((zipEntry.getName() + ":" + Long.toHexString(zipEntry.getCrc()) + ":" + zipEntry.getSize() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                classNames.add(zipEntry.getName());
+            }
+            copies.add(new Copy(jarFile, entry.getKey(), toHex(digest.digest()), classNames, versionOf(entry.getKey(), versions)));
+        }
+        return copies;
+    }
+
+    // La versión del pom.properties cuyo groupId corresponde a la raíz (el más largo que encaje)
+    private static String versionOf(String root, Map<String, String> versions) {
+        String best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            String group = entry.getKey();
+            if ((root.startsWith(group) || group.startsWith(root)) && group.length() > bestLength) {
+                best = entry.getValue();
+                bestLength = group.length();
+            }
+        }
+        return best;
+    }
+
+    // Raíces de todas las clases que usan las clases de una copia, según su constant pool
+    private static Set<String> referencedRoots(Copy copy) throws IOException {
+        Set<String> roots = new HashSet<>();
+        try (ZipFile zip = new ZipFile(copy.jar)) {
+            for (String className : copy.classNames) {
+                ZipEntry entry = zip.getEntry(className);
+                if (entry == null) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    for (String referenced : ClassReferences.read(in)) {
+                        String root = rootOf(referenced);
+                        if (root != null) {
+                            roots.add(root);
+                        }
+                    }
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @param path Ruta de una clase o recurso con / (com/zaxxer/hikari/pool/HikariPool.class)
+     * @return La raíz de su paquete (com/zaxxer/hikari/), o null si está en el paquete por defecto
+     */
+    static String rootOf(String path) {
+        int end = path.lastIndexOf('/');
+        if (end < 0) {
+            return null;
+        }
+        int position = -1;
+        for (int i = 0; i < ROOT_SEGMENTS; i++) {
+            int next = path.indexOf('/', position + 1);
+            if (next < 0 || next > end) {
+                break;
+            }
+            position = next;
+        }
+        return path.substring(0, position + 1);
+    }
+
+    static String displayName(String root) {
+        return root.substring(0, root.length() - 1).replace('/', '.');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    // Clase interna con las clases de una biblioteca dentro de un JAR
+    private static class Copy {
+        final File jar;
+        final String root;
+        final String fingerprint;
+        final List<String> classNames;
+        final String firstClass;
+        final String version;
+
+        Copy(File jar, String root, String fingerprint, List<String> classNames, String version) {
+            this.jar = jar;
+            this.root = root;
+            this.fingerprint = fingerprint;
+            this.classNames = classNames;
+            this.firstClass = classNames.get(0);
+            this.version = version;
+        }
+    }
+
+    /**
+     * Biblioteca idéntica en varios JARs, que se carga una sola vez
+     */
+    public static class Library {
+        private final String name;
+        private final List<File> jars = new ArrayList<>();
+        private final int classCount;
+        private final String version;
+
+        Library(String root, List<Copy> copies) {
+            this.name = displayName(root);
+            for (Copy copy : copies) {
+                jars.add(copy.jar);
+            }
+            this.classCount = copies.get(0).classNames.size();
+            this.version = copies.get(0).version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<File> getJars() {
+            return jars;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        /**
+         * @return La versión según su pom.properties, o null si no lo incluye
+         */
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Biblioteca que aparece con contenidos distintos en varios JARs
+     */
+    public static class Conflict {
+        private final String name;
+        // Cada variante: los JARs que la contienen y su versión
+        private final List<String> variants = new ArrayList<>();
+
+        Conflict(String root, Iterable<List<Copy>> groups) {
+            this.name = displayName(root);
+            for (List<Copy> group : groups) {
+                List<String> jarNames = new ArrayList<>();
+                for (Copy copy : group) {
+                    jarNames.add(copy.jar.getName());
+                }
+                String version = group.get(0).version != null ? group.get(0).version : "huella " + group.get(0).fingerprint.substring(0, 8);
+                variants.add(String.join(", ", jarNames) + " (" + version + ")");
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getVariants() {
+            return variants;
+        }
+    }
+
+    /**
+     * Lector mínimo del constant pool de un .class: devuelve los nombres internos de las clases que usa,
+     * tanto las referencias directas como las de los descriptores de campos y métodos.
+     */
+    static final class ClassReferences {
+        private ClassReferences() {
+        }
+
+        static Set<String> read(InputStream input) throws IOException {
+            DataInputStream in = new DataInputStream(input);
+            Set<String> names = new HashSet<>();
+            if (in.readInt() != 0xCAFEBABE) {
+                return names;
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            List<Integer> classIndexes = new ArrayList<>();
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1:
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7:
+                        classIndexes.add(in.readUnsignedShort());
+                        break;
+                    case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                        skip(in, 4);
+                        break;
+                    case 5: case 6:
+                        skip(in, 8);
+                        i++;
+                        break;
+                    case 15:
+                        skip(in, 3);
+                        break;
+                    case 8: case 16: case 19: case 20:
+                        skip(in, 2);
+                        break;
+                    default:
+                        throw new IOException("Constant pool no válido (etiqueta " + tag + ")");
+                }
+            }
+
+            for (int index : classIndexes) {
+                String name = index < count ? utf8[index] : null;
+                if (name == null) {
+                    continue;
+                }
+                if (name.startsWith("[")) {
+                    addDescriptorNames(name, names);
+                } else {
+                    names.add(name + ".class");
+                }
+            }
+            // Descriptores y firmas: (Lcom/foo/Bar;)V, Ljava/util/List<Lcom/foo/Bar;>;
+            for (String value : utf8) {
+                if (value != null && !value.isEmpty() && "(L[<".indexOf(value.charAt(0)) >= 0) {
+                    addDescriptorNames(value, names);
+                }
+            }
+            return names;
+        }
+
+        private static void addDescriptorNames(String descriptor, Set<String> names) {
+            int position = 0;
+            while ((position = descriptor.indexOf('L', position)) >= 0) {
+                int end = position + 1;
+                while (end < descriptor.length() && isNameChar(descriptor.charAt(end))) {
+                    end++;
+                }
+                if (end < descriptor.length() && end > position + 1 && (descriptor.charAt(end) == ';' || descriptor.charAt(end) == '<')) {
+                    names.add(descriptor.substring(position + 1, end) + ".class");
+                }
+                position = end;
+            }
+        }
+
+        private static boolean isNameChar(char c) {
+            return c == '/' || c == '$' || c == '_' || Character.isLetterOrDigit(c);
+        }
+
+        private static void skip(DataInputStream in, int bytes) throws IOException {
+            in.readFully(new byte[bytes]);
+        }
+    }
+}
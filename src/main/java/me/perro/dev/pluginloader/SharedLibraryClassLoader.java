@@ -0,0 +1,112 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.plugin.PluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classloader padre común de las bibliotecas compartidas entre sub-plugins.
+ * Solo sirve las clases y recursos de esas bibliotecas, desde una de sus copias; el resto de cada JAR no es visible.
+ * Bukkit busca las clases en la caché global del JavaPluginLoader antes que en el propio JAR del plugin,
+ * así que basta con que esa caché resuelva las clases compartidas con este classloader.
+ */
+public class SharedLibraryClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final SharedLibraries libraries;
+    private final LongAdder definedClasses = new LongAdder();
+
+    public SharedLibraryClassLoader(SharedLibraries libraries, ClassLoader serverLoader) throws MalformedURLException {
+        super(toUrls(libraries), serverLoader);
+        this.libraries = libraries;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!libraries.isSharedClass(name)) {
+            throw new ClassNotFoundException(name);
+        }
+        Class<?> result = super.findClass(name);
+        definedClasses.increment();
+        return result;
+    }
+
+    @Override
+    public URL findResource(String name) {
+        return libraries.isSharedResource(name) ? super.findResource(name) : null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        return libraries.isSharedResource(name) ? super.findResources(name) : Collections.emptyEnumeration();
+    }
+
+    /**
+     * @return Clases cargadas desde este classloader, cada una una sola vez para todos los sub-plugins
+     */
+    public long getDefinedClasses() {
+        return definedClasses.sum();
+    }
+
+    /**
+     * Sustituye la caché global de clases del JavaPluginLoader por una que resuelve las clases compartidas
+     * con este classloader. Debe llamarse antes de cargar los sub-plugins.
+     */
+    @SuppressWarnings("unchecked")
+    public void install(PluginLoader pluginLoader) throws ReflectiveOperationException {
+        Field classesField = pluginLoader.getClass().getDeclaredField("classes");
+        classesField.setAccessible(true);
+        Map<String, Class<?>> current = (Map<String, Class<?>>) classesField.get(pluginLoader);
+        if (current instanceof SharedClassMap) {
+            return;
+        }
+        classesField.set(pluginLoader, new SharedClassMap(current, this));
+    }
+
+    private static URL[] toUrls(SharedLibraries libraries) throws MalformedURLException {
+        URL[] urls = new URL[libraries.getSourceJars().size()];
+        int i = 0;
+        for (File jar : libraries.getSourceJars()) {
+            urls[i++] = jar.toURI().toURL();
+        }
+        return urls;
+    }
+
+    // Clase interna con la caché global de clases de Bukkit, que carga bajo demanda las clases compartidas.
+    // No las guarda: así, cuando Bukkit borra las clases de un plugin al deshabilitarlo, las compartidas siguen disponibles.
+    private static class SharedClassMap extends ConcurrentHashMap<String, Class<?>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient SharedLibraryClassLoader loader;
+
+        SharedClassMap(Map<String, Class<?>> classes, SharedLibraryClassLoader loader) {
+            super(classes);
+            this.loader = loader;
+        }
+
+        @Override
+        public Class<?> get(Object key) {
+            Class<?> result = super.get(key);
+            if (result == null && key instanceof String && loader.libraries.isSharedClass((String) key)) {
+                try {
+                    result = loader.loadClass((String) key);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    return null;
+                }
+            }
+            return result;
+        }
+    }
+}
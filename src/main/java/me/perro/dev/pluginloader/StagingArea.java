@@ -0,0 +1,269 @@
+package me.perro.dev.pluginloader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Actualizaciones descargadas y validadas que esperan al próximo arranque.
+ * Cada una es una carpeta staging/&lt;repositorio&gt;/ con sus JARs más un manifiesto que se escribe al final
+ * (con renombrado atómico), así que una actualización sin manifiesto está incompleta y se descarta.
+ * Al arrancar, antes de cargar los sub-plugins, cada JAR se mueve a la carpeta de sub-plugins con un renombrado,
+ * sin copiar nada, y la versión anterior se elimina en ese momento, cuando todavía no está cargada.
+ */
+public class StagingArea {
+    private final File stagingFolder;
+    private final Logger logger;
+
+    public StagingArea(File dataFolder, Logger logger) {
+        this.stagingFolder = new File(dataFolder, "staging");
+        this.logger = logger;
+
+        if (!stagingFolder.exists()) {
+            stagingFolder.mkdirs();
+        }
+
+        // Carpetas sin manifiesto: preparaciones interrumpidas
+        File[] folders = stagingFolder.listFiles(File::isDirectory);
+        if (folders != null) {
+            for (File folder : folders) {
+                if (!new File(stagingFolder, folder.getName() + ".properties").exists()) {
+                    deleteRecursively(folder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepara una actualización, sustituyendo la que hubiera preparada para el mismo repositorio
+     * @param jars JARs ya validados y guardados en el almacén
+     */
+    public synchronized void stage(String repoKey, List<JarExtractor.ExtractedJar> jars, ArtifactStore store,
+                                   String artifactId, String version, long runId, String fingerprint) throws IOException {
+        discard(repoKey);
+
+        File folder = folderFor(repoKey);
+        if (!folder.mkdirs()) {
+            throw new IOException("No se pudo crear la carpeta " + folder.getPath());
+        }
+
+        Properties manifest = new Properties();
+        manifest.setProperty("repo", repoKey);
+        manifest.setProperty("artifactId", artifactId);
+        manifest.setProperty("version", version);
+        manifest.setProperty("runId", String.valueOf(runId));
+        if (fingerprint != null) {
+            manifest.setProperty("fingerprint", fingerprint);
+        }
+        manifest.setProperty("files", String.valueOf(jars.size()));
+        for (int i = 0; i < jars.size(); i++) {
+            JarExtractor.ExtractedJar jar = jars.get(i);
+            File staged = store.link(jar.getSha256(), JarExtractor.uniqueFile(folder, jar.getName()));
+            manifest.setProperty("file." + i + ".name", staged.getName());
+            manifest.setProperty("file." + i + ".sha256", jar.getSha256());
+            manifest.setProperty("file." + i + ".size", String.valueOf(jar.getSize()));
+        }
+
+        File manifestFile = manifestFor(repoKey);
+        File tempFile = new File(manifestFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            manifest.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return true si esa ejecución ya está preparada para el próximo arranque
+     */
+    public synchronized boolean isStaged(String repoKey, long artifactId, long runId) {
+        Properties manifest = loadManifest(manifestFor(repoKey));
+        return manifest != null && String.valueOf(artifactId).equals(manifest.getProperty("artifactId"))
+                && String.valueOf(runId).equals(manifest.getProperty("runId"));
+    }
+
+    /**
+     * Descarta la actualización preparada de un repositorio, si la hay
+     * @return true si había una
+     */
+    public synchronized boolean discard(String repoKey) {
+        boolean existed = manifestFor(repoKey).delete();
+        deleteRecursively(folderFor(repoKey));
+        return existed;
+    }
+
+    /**
+     * @return Número de actualizaciones preparadas
+     */
+    public synchronized int size() {
+        File[] manifests = stagingFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        return manifests != null ? manifests.length : 0;
+    }
+
+    /**
+     * @return Hashes de los JARs preparados, para que el almacén no los elimine
+     */
+    public synchronized Set<String> getStagedHashes() {
+        Set<String> hashes = new HashSet<>();
+        File[] manifests = stagingFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (manifests != null) {
+            for (File manifestFile : manifests) {
+                Properties manifest = loadManifest(manifestFile);
+                if (manifest == null) {
+                    continue;
+                }
+                int files = parseInt(manifest.getProperty("files"));
+                for (int i = 0; i < files; i++) {
+                    String sha256 = manifest.getProperty("file." + i + ".sha256");
+                    if (sha256 != null) {
+                        hashes.add(sha256);
+                    }
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Aplica todas las actualizaciones preparadas. Se llama al arrancar, antes de cargar los sub-plugins.
+     * @return Número de actualizaciones aplicadas
+     */
+    public synchronized int promoteAll(File subPluginsFolder, VersionTracker versionTracker) {
+        File[] manifests = stagingFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (manifests == null) {
+            return 0;
+        }
+
+        int promoted = 0;
+        for (File manifestFile : manifests) {
+            Properties manifest = loadManifest(manifestFile);
+            String repoKey = manifest != null ? manifest.getProperty("repo") : null;
+            if (repoKey == null) {
+                logger.warning("Se descarta una actualización preparada ilegible: " + manifestFile.getName());
+                manifestFile.delete();
+                continue;
+            }
+
+            try {
+                promote(repoKey, manifest, subPluginsFolder, versionTracker);
+                promoted++;
+            } catch (IOException e) {
+                logger.severe("No se pudo aplicar la actualización preparada de " + repoKey + ": " + e.getMessage()
+                        + ". Se mantiene la versión actual.");
+            }
+            discard(repoKey);
+        }
+        return promoted;
+    }
+
+    private void promote(String repoKey, Properties manifest, File subPluginsFolder, VersionTracker versionTracker) throws IOException {
+        File folder = folderFor(repoKey);
+        String oldFileName = versionTracker.getCurrentPluginFileName(repoKey);
+        int files = parseInt(manifest.getProperty("files"));
+        if (files <= 0) {
+            throw new IOException("el manifiesto no contiene ningún JAR");
+        }
+
+        List<String> installedNames = new ArrayList<>();
+        File installedFile = null;
+        int installedIndex = -1;
+        for (int i = 0; i < files; i++) {
+            String name = manifest.getProperty("file." + i + ".name");
+            File staged = new File(folder, name);
+            File target = new File(subPluginsFolder, name);
+
+            if (!staged.exists()) {
+                // Ya se movió en un arranque anterior que se interrumpió antes de terminar
+                if (!target.exists()) {
+                    throw new IOException("falta el JAR " + name);
+                }
+            } else {
+                if (target.exists() && !name.equals(oldFileName)) {
+                    target = JarExtractor.uniqueFile(subPluginsFolder, name);
+                }
+                Files.move(staged.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            installedNames.add(target.getName());
+            installedFile = target;
+            installedIndex = i;
+        }
+
+        // La versión anterior todavía no está cargada, así que se puede eliminar en cualquier sistema
+        if (oldFileName != null && !installedNames.contains(oldFileName)) {
+            File oldFile = new File(subPluginsFolder, oldFileName);
+            if (oldFile.exists() && !oldFile.delete()) {
+                logger.warning("No se pudo eliminar la versión anterior: " + oldFileName);
+            }
+        }
+
+        versionTracker.updatePluginInfo(repoKey, manifest.getProperty("artifactId"), manifest.getProperty("version"),
+                Long.parseLong(manifest.getProperty("runId", "0")), installedFile.getName(),
+                manifest.getProperty("file." + installedIndex + ".sha256"),
+                parseLong(manifest.getProperty("file." + installedIndex + ".size")),
+                manifest.getProperty("fingerprint"));
+        logger.info("Actualización aplicada para " + repoKey + ": " + installedFile.getName() + " (" + manifest.getProperty("version") + ")");
+    }
+
+    private File folderFor(String repoKey) {
+        return new File(stagingFolder, safeName(repoKey));
+    }
+
+    private File manifestFor(String repoKey) {
+        return new File(stagingFolder, safeName(repoKey) + ".properties");
+    }
+
+    // La clave del repositorio viene de la configuración: no debe poder salirse de la carpeta
+    private static String safeName(String repoKey) {
+        String name = repoKey.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.replace(".", "").isEmpty() ? "_" + name : name;
+    }
+
+    private static Properties loadManifest(File manifestFile) {
+        if (!manifestFile.exists()) {
+            return null;
+        }
+        Properties manifest = new Properties();
+        try (InputStream in = new FileInputStream(manifestFile)) {
+            manifest.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return manifest;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,146 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.InvalidPluginException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Datos del plugin.yml de un sub-plugin que hacen falta para decidir si y cuándo cargarlo
+ */
+public class SubPluginDescriptor {
+    private final File file;
+    private final String name;
+    private final String main;
+    private final String version;
+    private final List<String> depend;
+    private final List<String> softDepend;
+    private final List<String> loadBefore;
+    // Comandos declarados y sus alias
+    private final Map<String, List<String>> commands;
+    // Permiso de cada comando que declara uno
+    private final Map<String, String> commandPermissions;
+
+    public SubPluginDescriptor(File file, String name, String main, String version, List<String> depend,
+                               List<String> softDepend, List<String> loadBefore, Map<String, List<String>> commands,
+                               Map<String, String> commandPermissions) {
+        this.file = file;
+        this.name = name;
+        this.main = main;
+        this.version = version;
+        this.depend = Collections.unmodifiableList(new ArrayList<>(depend));
+        this.softDepend = Collections.unmodifiableList(new ArrayList<>(softDepend));
+        this.loadBefore = Collections.unmodifiableList(new ArrayList<>(loadBefore));
+        this.commands = Collections.unmodifiableMap(new LinkedHashMap<>(commands));
+        this.commandPermissions = Collections.unmodifiableMap(new LinkedHashMap<>(commandPermissions));
+    }
+
+    /**
+     * Lee y valida el plugin.yml de un JAR. Comprueba que tenga nombre y clase principal
+     * y que esa clase exista dentro del JAR.
+     */
+    public static SubPluginDescriptor read(File jarFile) throws InvalidPluginException {
+        try (JarFile jar = new JarFile(jarFile)) {
+            JarEntry pluginYml = jar.getJarEntry("plugin.yml");
+
+            if (pluginYml == null) {
+                throw new InvalidPluginException("El archivo JAR no contiene plugin.yml");
+            }
+
+            // Leer el plugin.yml para verificar información básica
+            YamlConfiguration config;
+            try (InputStream in = jar.getInputStream(pluginYml)) {
+                config = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+
+            String pluginName = config.getString("name");
+            String mainClass = config.getString("main");
+
+            if (pluginName == null || mainClass == null) {
+                throw new InvalidPluginException("El plugin.yml no contiene información necesaria");
+            }
+
+            if (jar.getJarEntry(mainClass.replace('.', '/') + ".class") == null) {
+                throw new InvalidPluginException("La clase principal " + mainClass + " no existe en el JAR");
+            }
+
+            Map<String, List<String>> commands = new LinkedHashMap<>();
+            Map<String, String> commandPermissions = new LinkedHashMap<>();
+            ConfigurationSection commandsSection = config.getConfigurationSection("commands");
+            if (commandsSection != null) {
+                for (String command : commandsSection.getKeys(false)) {
+                    commands.put(command, readList(config, "commands." + command + ".aliases"));
+                    String permission = config.getString("commands." + command + ".permission");
+                    if (permission != null && !permission.isEmpty()) {
+                        commandPermissions.put(command, permission);
+                    }
+                }
+            }
+
+            return new SubPluginDescriptor(jarFile, pluginName, mainClass, config.getString("version", ""),
+                    readList(config, "depend"), readList(config, "softdepend"), readList(config, "loadbefore"), commands, commandPermissions);
+        } catch (IOException e) {
+            throw new InvalidPluginException("Error al acceder al archivo JAR: " + e.getMessage());
+        }
+    }
+
+    // Bukkit permite escribir estas listas como una lista o como un único valor
+    private static List<String> readList(ConfigurationSection config, String path) {
+        if (config.isSet(path) && !(config.get(path) instanceof List)) {
+            return Collections.singletonList(config.getString(path));
+        }
+        List<String> values = config.getStringList(path);
+        return values != null ? values : Collections.<String>emptyList();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMain() {
+        return main;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<String> getDepend() {
+        return depend;
+    }
+
+    public List<String> getSoftDepend() {
+        return softDepend;
+    }
+
+    public List<String> getLoadBefore() {
+        return loadBefore;
+    }
+
+    public Map<String, List<String>> getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return Permiso declarado para el comando, o null si no tiene
+     */
+    public String getCommandPermission(String command) {
+        return commandPermissions.get(command);
+    }
+}
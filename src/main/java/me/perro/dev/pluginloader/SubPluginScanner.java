@@ -0,0 +1,193 @@
+package me.perro.dev.pluginloader;
+
+import org.bukkit.plugin.InvalidPluginException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Analiza los JARs de sub-plugins en paralelo y calcula el orden de carga
+ * respetando depend, softdepend y loadbefore.
+ */
+public class SubPluginScanner {
+    private final Logger logger;
+
+    public SubPluginScanner(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Lee y valida el plugin.yml de todos los JARs en paralelo.
+     * Los JARs que no han cambiado desde el último arranque se toman del índice sin abrirlos.
+     * Los JARs no válidos se descartan y se informa de ellos en el log.
+     * @param jarFiles JARs a analizar
+     * @param executor Executor donde leer los JARs
+     * @param index Índice de descriptores de arranques anteriores
+     * @return Los descriptores válidos, en el mismo orden que los JARs
+     */
+    public List<SubPluginDescriptor> scan(File[] jarFiles, ExecutorService executor, DescriptorIndex index) throws InterruptedException {
+        Map<File, SubPluginDescriptor> indexed = new HashMap<>();
+        Map<File, Future<SubPluginDescriptor>> scans = new LinkedHashMap<>();
+        for (File jarFile : jarFiles) {
+            SubPluginDescriptor descriptor = index.lookup(jarFile);
+            if (descriptor != null) {
+                indexed.put(jarFile, descriptor);
+            } else {
+                scans.put(jarFile, executor.submit(() -> SubPluginDescriptor.read(jarFile)));
+            }
+        }
+
+        List<SubPluginDescriptor> descriptors = new ArrayList<>();
+        for (File jarFile : jarFiles) {
+            SubPluginDescriptor descriptor = indexed.get(jarFile);
+            if (descriptor != null) {
+                descriptors.add(descriptor);
+                continue;
+            }
+
+            try {
+                descriptor = scans.get(jarFile).get();
+                index.put(descriptor);
+                descriptors.add(descriptor);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InvalidPluginException) {
+                    logger.severe("Sub-plugin no válido " + jarFile.getName() + ": " + cause.getMessage());
+                } else {
+                    logger.log(Level.SEVERE, "Error al analizar sub-plugin: " + jarFile.getName(), cause);
+                }
+            }
+        }
+
+        index.retain(jarFiles);
+        index.save();
+        if (!indexed.isEmpty()) {
+            logger.info(indexed.size() + " de " + jarFiles.length + " sub-plugins sin cambios, leídos desde el índice.");
+        }
+        return descriptors;
+    }
+
+    /**
+     * Ordena los sub-plugins para que cada uno se cargue después de sus dependencias.
+     * Descarta (e informa) los que tienen dependencias que faltan o ciclos de dependencias obligatorias.
+     * Los ciclos que solo incluyen softdepend o loadbefore se rompen en lugar de descartar plugins.
+     * @param descriptors Sub-plugins válidos
+     * @param externallyAvailable Indica si un plugin que no es un sub-plugin ya está disponible en el servidor
+     * @return Los sub-plugins en el orden en que deben cargarse
+     */
+    public List<SubPluginDescriptor> resolveLoadOrder(List<SubPluginDescriptor> descriptors, Predicate<String> externallyAvailable) {
+        // Indexar por nombre; si dos JARs declaran el mismo plugin solo se carga el primero
+        Map<String, SubPluginDescriptor> byName = new LinkedHashMap<>();
+        for (SubPluginDescriptor descriptor : descriptors) {
+            SubPluginDescriptor existing = byName.putIfAbsent(descriptor.getName(), descriptor);
+            if (existing != null) {
+                logger.warning("Los JARs " + existing.getFile().getName() + " y " + descriptor.getFile().getName()
+                        + " contienen el mismo plugin " + descriptor.getName() + ". Solo se cargará el primero.");
+            }
+        }
+
+        // Descartar los plugins con dependencias obligatorias que no existen (y los que dependen de ellos)
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (SubPluginDescriptor descriptor : new ArrayList<>(byName.values())) {
+                for (String dependency : descriptor.getDepend()) {
+                    if (!byName.containsKey(dependency) && !externallyAvailable.test(dependency)) {
+                        logger.severe("No se cargará " + descriptor.getName() + ": falta la dependencia " + dependency);
+                        byName.remove(descriptor.getName());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Aristas: antes -> después. Las obligatorias nunca se rompen
+        Map<String, Set<String>> hardEdges = new HashMap<>();
+        Map<String, Set<String>> softEdges = new HashMap<>();
+        for (SubPluginDescriptor descriptor : byName.values()) {
+            for (String dependency : descriptor.getDepend()) {
+                if (byName.containsKey(dependency)) {
+                    addEdge(hardEdges, dependency, descriptor.getName());
+                }
+            }
+            for (String dependency : descriptor.getSoftDepend()) {
+                if (byName.containsKey(dependency)) {
+                    addEdge(softEdges, dependency, descriptor.getName());
+                }
+            }
+            for (String target : descriptor.getLoadBefore()) {
+                if (byName.containsKey(target)) {
+                    addEdge(softEdges, descriptor.getName(), target);
+                }
+            }
+        }
+
+        List<SubPluginDescriptor> ordered = new ArrayList<>();
+        Set<String> remaining = new LinkedHashSet<>(byName.keySet());
+
+        while (!remaining.isEmpty()) {
+            String next = nextReady(remaining, hardEdges, softEdges);
+            if (next == null) {
+                // Ciclo con dependencias opcionales: se ignoran para desbloquear
+                next = nextReady(remaining, hardEdges, null);
+                if (next != null) {
+                    logger.warning("Ciclo de softdepend/loadbefore entre: " + remaining + ". Se cargará " + next + " sin respetar el orden opcional.");
+                }
+            }
+
+            if (next == null) {
+                // Ciclo de dependencias obligatorias: ninguno de los restantes se puede cargar
+                logger.severe("Ciclo de dependencias entre: " + remaining + ". Estos sub-plugins no se cargarán.");
+                break;
+            }
+
+            ordered.add(byName.get(next));
+            remaining.remove(next);
+        }
+
+        return ordered;
+    }
+
+    private static String nextReady(Set<String> remaining, Map<String, Set<String>> hardEdges, Map<String, Set<String>> softEdges) {
+        for (String candidate : remaining) {
+            if (!hasIncomingEdge(candidate, remaining, hardEdges) && (softEdges == null || !hasIncomingEdge(candidate, remaining, softEdges))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static void addEdge(Map<String, Set<String>> edges, String from, String to) {
+        if (!from.equals(to)) {
+            edges.computeIfAbsent(to, k -> new HashSet<>()).add(from);
+        }
+    }
+
+    // Las aristas se guardan por destino, así que esto comprueba si queda algún predecesor pendiente
+    private static boolean hasIncomingEdge(String node, Set<String> remaining, Map<String, Set<String>> edges) {
+        Set<String> predecessors = edges.get(node);
+        if (predecessors == null) {
+            return false;
+        }
+        for (String predecessor : predecessors) {
+            if (remaining.contains(predecessor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
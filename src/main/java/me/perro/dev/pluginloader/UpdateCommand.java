@@ -29,15 +29,22 @@ public class UpdateCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§e--- PluginLoader Help ---");
             sender.sendMessage("§e/pluginloader check §7- Comprobar actualizaciones");
             sender.sendMessage("§e/pluginloader update §7- Descargar todas las actualizaciones pendientes");
+            sender.sendMessage("§e/pluginloader rollback <repo> §7- Volver a la versión anterior de un plugin");
+            sender.sendMessage("§e/pluginloader reload §7- Recargar la configuración de los repositorios");
+            sender.sendMessage("§e/pluginloader stats §7- Ver las métricas de comprobaciones, descargas y cargas");
+            sender.sendMessage("§e/pluginloader activate <plugin> §7- Cargar ahora un sub-plugin en espera (lazy)");
             return true;
         }
 
         switch (args[0].toLowerCase()) {
             case "check":
                 sender.sendMessage("§aComprobando actualizaciones...");
-                // Ejecutar en un hilo separado
-                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-                    Map<String, MainLoader.UpdateInfo> updates = plugin.checkForUpdates(false);
+                // Se ejecuta en un hilo separado; si ya hay una comprobación en curso se reutiliza su resultado
+                plugin.checkForUpdates(false).whenComplete((updates, error) -> {
+                    if (error != null) {
+                        sender.sendMessage("§cError al comprobar actualizaciones. Revisa la consola para más detalles.");
+                        return;
+                    }
 
                     // Mensaje al jugador con la lista de actualizaciones
                     if (updates.isEmpty()) {
@@ -67,6 +74,49 @@ public class UpdateCommand implements CommandExecutor, TabCompleter {
                 });
                 return true;
 
+            case "rollback":
+                if (args.length < 2) {
+                    sender.sendMessage("§cUso: /pluginloader rollback <repo>");
+                    return true;
+                }
+                switch (plugin.rollbackPlugin(args[1])) {
+                    case HOT_SWAPPED:
+                        sender.sendMessage("§aVersión anterior de " + args[1] + " restaurada. Se recargará sin reiniciar el servidor.");
+                        break;
+                    case RESTART_REQUIRED:
+                        sender.sendMessage("§aVersión anterior de " + args[1] + " restaurada. Reinicia el servidor para cargarla.");
+                        break;
+                    default:
+                        sender.sendMessage("§cNo se pudo restaurar la versión anterior de " + args[1] + ". Revisa la consola para más detalles.");
+                }
+                return true;
+
+            case "reload":
+                int repositories = plugin.reloadRepositories();
+                sender.sendMessage("§aConfiguración recargada: " + repositories + " repositorios.");
+                return true;
+
+            case "stats":
+                sender.sendMessage("§e--- PluginLoader Stats ---");
+                for (String line : plugin.getStatsSummary()) {
+                    sender.sendMessage("§7" + line);
+                }
+                return true;
+
+            case "activate":
+                if (args.length < 2) {
+                    sender.sendMessage("§cUso: /pluginloader activate <plugin>");
+                    return true;
+                }
+                if (!plugin.getLazySubPluginNames().contains(args[1])) {
+                    sender.sendMessage("§c" + args[1] + " no es un sub-plugin en espera.");
+                } else if (plugin.activateSubPlugin(args[1])) {
+                    sender.sendMessage("§aSub-plugin " + args[1] + " activado.");
+                } else {
+                    sender.sendMessage("§cNo se pudo activar " + args[1] + ". Revisa la consola para más detalles.");
+                }
+                return true;
+
             default:
                 sender.sendMessage("§cComando desconocido. Usa /pluginloader para ver los comandos disponibles.");
                 return true;
@@ -76,10 +126,20 @@ public class UpdateCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            List<String> completions = new ArrayList<>(Arrays.asList("check", "update"));
+            List<String> completions = new ArrayList<>(Arrays.asList("check", "update", "rollback", "reload", "stats", "activate"));
             completions.removeIf(s -> !s.toLowerCase().startsWith(args[0].toLowerCase()));
             return completions;
         }
+        if (args.length == 2 && args[0].equalsIgnoreCase("rollback")) {
+            List<String> completions = new ArrayList<>(plugin.getRepositoryKeys());
+            completions.removeIf(s -> !s.toLowerCase().startsWith(args[1].toLowerCase()));
+            return completions;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("activate")) {
+            List<String> completions = new ArrayList<>(plugin.getLazySubPluginNames());
+            completions.removeIf(s -> !s.toLowerCase().startsWith(args[1].toLowerCase()));
+            return completions;
+        }
         return new ArrayList<>();
     }
 }
\ No newline at end of file
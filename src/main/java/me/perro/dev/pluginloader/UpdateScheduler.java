@@ -0,0 +1,207 @@
+package me.perro.dev.pluginloader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Decide cuándo comprobar cada repositorio. Las comprobaciones se reparten a lo largo del intervalo con un
+ * margen aleatorio, los repositorios que cambian a menudo se comprueban más a menudo que los inactivos,
+ * y los que fallan seguidos esperan cada vez más (backoff exponencial) hasta que vuelven a responder.
+ */
+public class UpdateScheduler {
+    private static final double JITTER = 0.1;
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    private final Logger logger;
+    private final Map<String, RepoState> states = new ConcurrentHashMap<>();
+    private volatile long baseInterval;
+    private volatile long minInterval;
+    private volatile long maxInterval;
+    private volatile long maxBackoff;
+    private volatile int failureThreshold;
+
+    public UpdateScheduler(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Configura los intervalos, todos en milisegundos
+     * @param baseInterval Intervalo inicial de cada repositorio
+     * @param minInterval Intervalo mínimo para repositorios que cambian a menudo
+     * @param maxInterval Intervalo máximo para repositorios inactivos
+     * @param maxBackoff Espera máxima para repositorios que fallan
+     * @param failureThreshold Fallos seguidos a partir de los que se avisa de que el repositorio se está evitando
+     */
+    public void configure(long baseInterval, long minInterval, long maxInterval, long maxBackoff, int failureThreshold) {
+        this.baseInterval = baseInterval;
+        this.minInterval = Math.min(minInterval, baseInterval);
+        this.maxInterval = Math.max(maxInterval, baseInterval);
+        this.maxBackoff = Math.max(maxBackoff, baseInterval);
+        this.failureThreshold = Math.max(1, failureThreshold);
+    }
+
+    /**
+     * Devuelve los repositorios a los que ya les toca comprobarse y los marca como en curso.
+     * Los repositorios nuevos se programan en un momento aleatorio del intervalo para no comprobarlos todos a la vez.
+     * @param repoKeys Repositorios configurados
+     * @param now Momento actual en milisegundos
+     */
+    public List<String> due(Collection<String> repoKeys, long now) {
+        states.keySet().retainAll(repoKeys);
+
+        List<String> due = new ArrayList<>();
+        for (String repoKey : repoKeys) {
+            RepoState state = states.computeIfAbsent(repoKey, k -> {
+                RepoState initial = new RepoState(baseInterval);
+                initial.nextCheckAt = now + (long) (ThreadLocalRandom.current().nextDouble() * baseInterval);
+                return initial;
+            });
+            synchronized (state) {
+                if (!state.inFlight && state.nextCheckAt <= now) {
+                    state.inFlight = true;
+                    due.add(repoKey);
+                }
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Aplaza la comprobación de un repositorio sin contarla como fallo (p. ej. por el límite de peticiones)
+     * @param until Momento a partir del que se puede volver a comprobar
+     */
+    public void defer(String repoKey, long until) {
+        RepoState state = states.get(repoKey);
+        if (state != null) {
+            synchronized (state) {
+                state.inFlight = false;
+                state.nextCheckAt = until + jitter(minInterval);
+            }
+        }
+    }
+
+    /**
+     * Anota la última ejecución de workflow vista en un repositorio, para saber si cambia a menudo
+     */
+    public void observeRun(String repoKey, long runId) {
+        RepoState state = states.computeIfAbsent(repoKey, k -> new RepoState(baseInterval));
+        synchronized (state) {
+            state.observedRunId = runId;
+        }
+    }
+
+    /**
+     * Registra una comprobación correcta y programa la siguiente
+     * @param slowDown Factor por el que alargar el intervalo para no agotar el límite de peticiones
+     */
+    public void recordSuccess(String repoKey, double slowDown) {
+        RepoState state = states.computeIfAbsent(repoKey, k -> new RepoState(baseInterval));
+        synchronized (state) {
+            if (state.failures >= failureThreshold) {
+                logger.info("El repositorio " + repoKey + " vuelve a responder tras " + state.failures + " fallos seguidos.");
+            }
+            state.failures = 0;
+
+            // Adaptar el intervalo: la mitad si hay una ejecución nueva, un 25% más si no ha cambiado
+            if (state.observedRunId != null && state.lastRunId != null) {
+                if (!state.observedRunId.equals(state.lastRunId)) {
+                    state.interval = Math.max(minInterval, state.interval / 2);
+                } else {
+                    state.interval = Math.min(maxInterval, state.interval + state.interval / 4);
+                }
+            }
+            if (state.observedRunId != null) {
+                state.lastRunId = state.observedRunId;
+            }
+
+            long interval = (long) (state.interval * Math.max(1.0, slowDown));
+            state.nextCheckAt = System.currentTimeMillis() + interval + jitter(interval);
+            state.inFlight = false;
+        }
+    }
+
+    /**
+     * Registra una comprobación fallida. Los fallos por el límite de peticiones no cuentan:
+     * de esos se encarga el {@link RateLimitTracker}.
+     * @param cause Causa del fallo
+     */
+    public void recordFailure(String repoKey, Throwable cause) {
+        RepoState state = states.computeIfAbsent(repoKey, k -> new RepoState(baseInterval));
+        synchronized (state) {
+            state.inFlight = false;
+            if (cause instanceof GitHubApiException && ((GitHubApiException) cause).isRateLimited()) {
+                state.nextCheckAt = System.currentTimeMillis() + state.interval + jitter(state.interval);
+                return;
+            }
+
+            state.failures++;
+            int exponent = Math.min(state.failures - 1, MAX_BACKOFF_EXPONENT);
+            long backoff = Math.min(maxBackoff, state.interval << exponent);
+            state.nextCheckAt = System.currentTimeMillis() + backoff + jitter(backoff);
+
+            if (state.failures == failureThreshold) {
+                logger.warning("El repositorio " + repoKey + " ha fallado " + state.failures
+                        + " veces seguidas. Se comprobará con menos frecuencia (hasta cada " + (maxBackoff / 60000) + " minutos) hasta que vuelva a responder.");
+            }
+        }
+    }
+
+    /**
+     * @return La ejecución más reciente vista en el repositorio, o -1 si todavía no se ha visto ninguna
+     */
+    public long getLatestRunId(String repoKey) {
+        RepoState state = states.get(repoKey);
+        if (state == null) {
+            return -1;
+        }
+        synchronized (state) {
+            long latest = -1;
+            if (state.lastRunId != null) {
+                latest = state.lastRunId;
+            }
+            if (state.observedRunId != null) {
+                latest = Math.max(latest, state.observedRunId);
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * @return Fallos seguidos del repositorio
+     */
+    public int getFailures(String repoKey) {
+        RepoState state = states.get(repoKey);
+        return state != null ? state.failures : 0;
+    }
+
+    /**
+     * @return Momento de la siguiente comprobación programada del repositorio, o 0 si no está programada
+     */
+    public long getNextCheckAt(String repoKey) {
+        RepoState state = states.get(repoKey);
+        return state != null ? state.nextCheckAt : 0;
+    }
+
+    private static long jitter(long interval) {
+        return (long) ((ThreadLocalRandom.current().nextDouble() * 2 - 1) * interval * JITTER);
+    }
+
+    // Clase interna con el estado de programación de un repositorio
+    private static class RepoState {
+        long interval;
+        long nextCheckAt;
+        int failures;
+        boolean inFlight;
+        Long lastRunId;
+        Long observedRunId;
+
+        RepoState(long interval) {
+            this.interval = interval;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package me.perro.dev.pluginloader;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Estado de las actualizaciones pendientes, seguro entre hilos.
+ * Los lectores siempre obtienen una copia inmutable y coherente; cada comprobación publica una copia nueva
+ * de una sola vez. Solo puede haber una comprobación en curso: quien pide otra mientras tanto espera a la actual.
+ */
+public class UpdateState {
+    private final AtomicReference<Map<String, MainLoader.UpdateInfo>> pending =
+            new AtomicReference<>(Collections.<String, MainLoader.UpdateInfo>emptyMap());
+    private final AtomicReference<CompletableFuture<Map<String, MainLoader.UpdateInfo>>> runningCheck = new AtomicReference<>();
+    private final Set<String> installing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Inicia una comprobación, o se une a la que ya está en curso
+     * @param check Comprobación a ejecutar si no hay ninguna en curso; devuelve las actualizaciones encontradas
+     * @param executor Dónde ejecutar la comprobación
+     * @return El resultado de la comprobación (el mismo para todos los que se unen a ella)
+     */
+    public CompletableFuture<Map<String, MainLoader.UpdateInfo>> check(Supplier<Map<String, MainLoader.UpdateInfo>> check, Executor executor) {
+        CompletableFuture<Map<String, MainLoader.UpdateInfo>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, MainLoader.UpdateInfo>> running = runningCheck.get();
+        while (running == null) {
+            if (runningCheck.compareAndSet(null, future)) {
+                executor.execute(() -> runCheck(check, future));
+                return future;
+            }
+            running = runningCheck.get();
+        }
+        return running;
+    }
+
+    private void runCheck(Supplier<Map<String, MainLoader.UpdateInfo>> check, CompletableFuture<Map<String, MainLoader.UpdateInfo>> future) {
+        try {
+            Map<String, MainLoader.UpdateInfo> snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(check.get()));
+            pending.set(snapshot);
+            // Dejar de estar en curso antes de avisar, para que quien reaccione al resultado pueda iniciar otra
+            runningCheck.set(null);
+            future.complete(snapshot);
+        } catch (Throwable t) {
+            runningCheck.set(null);
+            future.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * @return true si hay una comprobación en curso
+     */
+    public boolean isChecking() {
+        return runningCheck.get() != null;
+    }
+
+    /**
+     * @return Copia inmutable de las actualizaciones pendientes según la última comprobación
+     */
+    public Map<String, MainLoader.UpdateInfo> getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Quita una actualización de las pendientes, solo si sigue siendo la misma que se instaló
+     * (una comprobación posterior puede haberla sustituido por otra más nueva)
+     */
+    public void remove(String repoKey, MainLoader.UpdateInfo updateInfo) {
+        Map<String, MainLoader.UpdateInfo> current;
+        Map<String, MainLoader.UpdateInfo> updated;
+        do {
+            current = pending.get();
+            if (current.get(repoKey) != updateInfo) {
+                return;
+            }
+            updated = new LinkedHashMap<>(current);
+            updated.remove(repoKey);
+        } while (!pending.compareAndSet(current, Collections.unmodifiableMap(updated)));
+    }
+
+    /**
+     * Publica el resultado de la comprobación de un solo repositorio
+     * @param updateInfo La actualización encontrada, o null si el repositorio está al día
+     */
+    public void update(String repoKey, MainLoader.UpdateInfo updateInfo) {
+        Map<String, MainLoader.UpdateInfo> current;
+        Map<String, MainLoader.UpdateInfo> updated;
+        do {
+            current = pending.get();
+            if (current.get(repoKey) == updateInfo) {
+                return;
+            }
+            updated = new LinkedHashMap<>(current);
+            if (updateInfo != null) {
+                updated.put(repoKey, updateInfo);
+            } else {
+                updated.remove(repoKey);
+            }
+        } while (!pending.compareAndSet(current, Collections.unmodifiableMap(updated)));
+    }
+
+    /**
+     * Marca un repositorio como en instalación
+     * @return false si ya se está instalando una actualización de ese repositorio
+     */
+    public boolean beginInstall(String repoKey) {
+        return installing.add(repoKey);
+    }
+
+    public void endInstall(String repoKey) {
+        installing.remove(repoKey);
+    }
+}
@@ -0,0 +1,148 @@
+package me.perro.dev.pluginloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transporte HTTP basado en HttpURLConnection. La JVM mantiene un pool de conexiones keep-alive
+ * por host, pero solo devuelve una conexión al pool si su respuesta se ha leído entera y cerrado
+ * (y nunca si se llama a disconnect), así que aquí siempre se consume y se cierra la respuesta,
+ * incluidas las de error.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    // Por encima de esto es más barato cerrar la conexión que leer el resto para reutilizarla
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final String userAgent;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    /**
+     * @param userAgent User-Agent de todas las peticiones
+     * @param connectTimeout Tiempo máximo para conectar, en milisegundos
+     * @param readTimeout Tiempo máximo sin recibir datos, en milisegundos
+     */
+    public UrlConnectionTransport(String userAgent, int connectTimeout, int readTimeout) {
+        this.userAgent = userAgent;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers, boolean compressed) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        conn.setRequestProperty("User-Agent", userAgent);
+        if (compressed) {
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        long start = System.nanoTime();
+        int statusCode;
+        try {
+            statusCode = conn.getResponseCode();
+        } catch (IOException e) {
+            // Sin respuesta no hay nada que reutilizar
+            conn.disconnect();
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+        requests.increment();
+        totalLatencyNanos.add(latency);
+
+        return new UrlConnectionResponse(conn, statusCode, TimeUnit.NANOSECONDS.toMillis(latency));
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public double getAverageLatencyMillis() {
+        long count = requests.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / 1e6 / count;
+    }
+
+    // Clase interna con la respuesta de una HttpURLConnection
+    private static class UrlConnectionResponse implements Response {
+        private final HttpURLConnection conn;
+        private final int statusCode;
+        private final long latencyMillis;
+        private InputStream rawBody;
+        private InputStream body;
+
+        UrlConnectionResponse(HttpURLConnection conn, int statusCode, long latencyMillis) {
+            this.conn = conn;
+            this.statusCode = statusCode;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return conn.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                rawBody = openRawBody();
+                body = rawBody != null && "gzip".equalsIgnoreCase(conn.getContentEncoding())
+                        ? new GZIPInputStream(rawBody)
+                        : rawBody;
+            }
+            return body;
+        }
+
+        private InputStream openRawBody() throws IOException {
+            // Las respuestas de error solo se pueden leer por getErrorStream
+            return statusCode >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        }
+
+        @Override
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        @Override
+        public void close() {
+            try {
+                InputStream in = rawBody != null ? rawBody : openRawBody();
+                if (in == null) {
+                    return;
+                }
+                try {
+                    // Consumir lo que quede (sin descomprimir) para que la conexión vuelva al pool
+                    byte[] buffer = new byte[8192];
+                    long drained = 0;
+                    int read;
+                    while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) != -1) {
+                        drained += read;
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ignored) {
+                // La conexión no se podrá reutilizar, pero la respuesta ya se procesó
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package me.perro.dev.pluginloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Almacén en disco de las versiones instaladas: una instantánea completa más un diario al que solo se añaden registros.
+ * Cada cambio de un plugin se añade al diario como un registro con su CRC32, en lugar de reescribir todo el archivo.
+ * Cuando el diario crece, se compacta: se escribe una instantánea nueva (a un temporal que se renombra) y se vacía el diario.
+ * Cada registro contiene el estado completo de un plugin, así que volver a aplicarlo sobre una instantánea más nueva no cambia nada.
+ */
+public class VersionJournal {
+    private static final int MAGIC = 0x504C5653; // "PLVS"
+    private static final int JOURNAL_MAGIC = 0x504C564A; // "PLVJ"
+    // 2: huella del artefacto en cada versión. El diario de la versión 1 no tenía cabecera
+    // 3: ejecución descartada con un rollback
+    private static final int FORMAT_VERSION = 3;
+    private static final int JOURNAL_HEADER_SIZE = 8;
+    // Registros a partir de los que se compacta el diario
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final Logger logger;
+    private FileChannel journal;
+    private int journalRecords;
+    // Se leyeron archivos con un formato anterior, que hay que reescribir antes de añadir nada
+    private boolean upgradeNeeded;
+
+    public VersionJournal(File dataFolder, Logger logger) {
+        this.snapshotFile = new File(dataFolder, "versions.dat");
+        this.journalFile = new File(dataFolder, "versions.journal");
+        this.logger = logger;
+    }
+
+    /**
+     * @return true si no hay nada guardado todavía (primer arranque o versión anterior del plugin)
+     */
+    public boolean isEmpty() {
+        return !snapshotFile.exists() && !journalFile.exists();
+    }
+
+    /**
+     * Recupera el estado: lee la instantánea y aplica encima los registros válidos del diario.
+     * Si el último registro quedó a medias (por un cierre inesperado), se descarta y se corta el diario en ese punto.
+     * @return El estado de cada plugin, indexado por clave de repositorio
+     */
+    public Map<String, State> load() {
+        Map<String, State> states = new LinkedHashMap<>();
+
+        if (snapshotFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                int format;
+                if (in.readInt() != MAGIC || (format = in.readInt()) < 1 || format > FORMAT_VERSION) {
+                    throw new IOException("formato desconocido");
+                }
+                upgradeNeeded |= format < FORMAT_VERSION;
+                CRC32 crc = new CRC32();
+                DataInputStream data = new DataInputStream(new CheckedInputStream(in, crc));
+                int count = data.readInt();
+                for (int i = 0; i < count; i++) {
+                    String repoKey = data.readUTF();
+                    states.put(repoKey, readState(data, format));
+                }
+                if ((int) crc.getValue() != in.readInt()) {
+                    throw new IOException("CRC incorrecto");
+                }
+            } catch (IOException e) {
+                logger.severe("La instantánea de versiones está dañada (" + e.getMessage() + "). Se recuperará lo que haya en el diario.");
+                states.clear();
+            }
+        }
+
+        long validLength = 0;
+        if (journalFile.exists() && journalFile.length() > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+                int format = 1;
+                in.mark(JOURNAL_HEADER_SIZE);
+                if (journalFile.length() >= JOURNAL_HEADER_SIZE && in.readInt() == JOURNAL_MAGIC) {
+                    format = in.readInt();
+                    if (format < 1 || format > FORMAT_VERSION) {
+                        throw new IOException("formato desconocido");
+                    }
+                    validLength = JOURNAL_HEADER_SIZE;
+                } else {
+                    in.reset();
+                }
+                upgradeNeeded |= format < FORMAT_VERSION;
+
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    int expectedCrc = in.readInt();
+                    if (length <= 0 || length > journalFile.length()) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+
+                    CRC32 crc = new CRC32();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    String repoKey = record.readUTF();
+                    states.put(repoKey, readState(record, format));
+                    validLength += 8 + length;
+                    journalRecords++;
+                }
+            } catch (EOFException e) {
+                // Registro a medias al final del diario
+            } catch (IOException e) {
+                logger.warning("Error al leer el diario de versiones: " + e.getMessage());
+            }
+
+            if (validLength < journalFile.length()) {
+                logger.warning("El diario de versiones tenía un registro incompleto al final. Se ha descartado.");
+            }
+        }
+
+        try {
+            openJournal(validLength);
+        } catch (IOException e) {
+            logger.severe("No se pudo abrir el diario de versiones: " + e.getMessage());
+        }
+        return states;
+    }
+
+    /**
+     * Añade al diario el estado actual de un plugin y lo fuerza a disco
+     */
+    public synchronized void append(String repoKey, State state) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(repoKey);
+            writeState(out, state);
+            byte[] payload = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+            record.putInt(payload.length);
+            record.putInt((int) crc.getValue());
+            record.put(payload);
+            record.flip();
+
+            if (journal == null) {
+                openJournal(journalFile.length());
+            }
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journal.force(false);
+            journalRecords++;
+        } catch (IOException e) {
+            logger.severe("No se pudo guardar la versión de " + repoKey + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true si el diario tiene suficientes registros como para compactarlo
+     */
+    public synchronized boolean needsCompaction() {
+        return upgradeNeeded || journalRecords >= COMPACT_THRESHOLD;
+    }
+
+    /**
+     * Escribe una instantánea con el estado completo y vacía el diario.
+     * La instantánea se escribe a un temporal y se renombra, así que un fallo a mitad deja la anterior intacta.
+     */
+    public synchronized void compact(Map<String, State> states) {
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                CRC32 crc = new CRC32();
+                DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+                data.writeInt(states.size());
+                for (Map.Entry<String, State> entry : states.entrySet()) {
+                    data.writeUTF(entry.getKey());
+                    writeState(data, entry.getValue());
+                }
+                data.flush();
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // La instantánea ya contiene todo lo del diario
+            if (journal == null) {
+                openJournal(0);
+            } else {
+                resetJournal();
+            }
+            journal.force(false);
+            journalRecords = 0;
+            upgradeNeeded = false;
+        } catch (IOException e) {
+            logger.severe("No se pudo compactar el archivo de versiones: " + e.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Cierra el diario
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+                // Los registros ya se forzaron a disco al escribirlos
+            }
+            journal = null;
+        }
+    }
+
+    private void openJournal(long validLength) throws IOException {
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validLength == 0) {
+            resetJournal();
+            return;
+        }
+        if (journal.size() > validLength) {
+            journal.truncate(validLength);
+        }
+        journal.position(validLength);
+    }
+
+    // Vacía el diario dejando solo la cabecera
+    private void resetJournal() throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.flip();
+        journal.position(0);
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+    }
+
+    private static State readState(DataInputStream in, int format) throws IOException {
+        VersionTracker.PluginInfo current = readInfo(in, format);
+        int historySize = in.readInt();
+        List<VersionTracker.PluginInfo> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(readInfo(in, format));
+        }
+        long skippedRunId = format >= 3 ? in.readLong() : -1;
+        return new State(current, history, skippedRunId);
+    }
+
+    private static void writeState(DataOutputStream out, State state) throws IOException {
+        writeInfo(out, state.getCurrent());
+        out.writeInt(state.getHistory().size());
+        for (VersionTracker.PluginInfo info : state.getHistory()) {
+            writeInfo(out, info);
+        }
+        out.writeLong(state.getSkippedRunId());
+    }
+
+    private static VersionTracker.PluginInfo readInfo(DataInputStream in, int format) throws IOException {
+        String artifactId = readNullable(in);
+        String version = readNullable(in);
+        long runId = in.readLong();
+        String fileName = readNullable(in);
+        String sha256 = readNullable(in);
+        long size = in.readLong();
+        String fingerprint = format >= 2 ? readNullable(in) : null;
+        return new VersionTracker.PluginInfo(artifactId, version, runId, fileName, sha256, size, fingerprint);
+    }
+
+    private static void writeInfo(DataOutputStream out, VersionTracker.PluginInfo info) throws IOException {
+        writeNullable(out, info.getArtifactId());
+        writeNullable(out, info.getVersion());
+        out.writeLong(info.getRunId());
+        writeNullable(out, info.getFileName());
+        writeNullable(out, info.getSha256());
+        out.writeLong(info.getSize());
+        writeNullable(out, info.getFingerprint());
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    // Clase interna con el estado guardado de un plugin: la versión actual, las anteriores y la ejecución descartada
+    public static class State {
+        private final VersionTracker.PluginInfo current;
+        private final List<VersionTracker.PluginInfo> history;
+        private final long skippedRunId;
+
+        public State(VersionTracker.PluginInfo current, List<VersionTracker.PluginInfo> history) {
+            this(current, history, -1);
+        }
+
+        public State(VersionTracker.PluginInfo current, List<VersionTracker.PluginInfo> history, long skippedRunId) {
+            this.current = current;
+            this.history = history;
+            this.skippedRunId = skippedRunId;
+        }
+
+        public VersionTracker.PluginInfo getCurrent() {
+            return current;
+        }
+
+        public List<VersionTracker.PluginInfo> getHistory() {
+            return history;
+        }
+
+        /**
+         * @return ID de la ejecución que se deshizo con un rollback, o -1 si no hay ninguna
+         */
+        public long getSkippedRunId() {
+            return skippedRunId;
+        }
+    }
+}
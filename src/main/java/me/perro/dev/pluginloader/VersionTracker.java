@@ -1,70 +1,139 @@
 package me.perro.dev.pluginloader;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 public class VersionTracker {
     private final File versionFile;
-    private YamlConfiguration versionConfig;
+    private final VersionJournal journal;
     private final Logger logger;
 
     // Almacena información sobre los plugins instalados
-    private final Map<String, PluginInfo> pluginInfoMap = new HashMap<>();
+    private final Map<String, PluginInfo> pluginInfoMap = new ConcurrentHashMap<>();
+    // Versiones anteriores de cada plugin, de la más reciente a la más antigua
+    private final Map<String, List<PluginInfo>> historyMap = new HashMap<>();
+    // Ejecución que se deshizo con un rollback: no se vuelve a instalar sola
+    private final Map<String, Long> skippedRunMap = new ConcurrentHashMap<>();
+    private int historyLimit = 5;
 
     public VersionTracker(File dataFolder, Logger logger) {
         this.versionFile = new File(dataFolder, "versions.yml");
+        this.journal = new VersionJournal(dataFolder, logger);
         this.logger = logger;
         loadVersionFile();
     }
 
     private void loadVersionFile() {
-        if (!versionFile.exists()) {
-            try {
-                versionFile.createNewFile();
-            } catch (IOException e) {
-                logger.severe("No se pudo crear el archivo de versiones: " + e.getMessage());
+        // Primer arranque con el diario: importar el versions.yml de versiones anteriores
+        if (journal.isEmpty() && versionFile.exists()) {
+            importVersionFile();
+            return;
+        }
+
+        for (Map.Entry<String, VersionJournal.State> entry : journal.load().entrySet()) {
+            pluginInfoMap.put(entry.getKey(), entry.getValue().getCurrent());
+            historyMap.put(entry.getKey(), new ArrayList<>(entry.getValue().getHistory()));
+            if (entry.getValue().getSkippedRunId() >= 0) {
+                skippedRunMap.put(entry.getKey(), entry.getValue().getSkippedRunId());
             }
         }
+        // Archivos de una versión anterior del formato: reescribirlos antes de añadir registros nuevos
+        if (journal.needsCompaction()) {
+            saveVersionFile();
+        }
+    }
 
-        versionConfig = YamlConfiguration.loadConfiguration(versionFile);
+    private void importVersionFile() {
+        YamlConfiguration versionConfig = YamlConfiguration.loadConfiguration(versionFile);
 
         // Cargar la información guardada
         if (versionConfig.contains("plugins")) {
             for (String key : versionConfig.getConfigurationSection("plugins").getKeys(false)) {
                 String path = "plugins." + key + ".";
+                pluginInfoMap.put(key, readInfo(versionConfig, path));
 
-                String artifactId = versionConfig.getString(path + "artifactId");
-                String version = versionConfig.getString(path + "version");
-                long runId = versionConfig.getLong(path + "runId");
-                String fileName = versionConfig.getString(path + "fileName");
-
-                pluginInfoMap.put(key, new PluginInfo(artifactId, version, runId, fileName));
+                // Versiones anteriores disponibles para rollback, de la más reciente a la más antigua
+                List<PluginInfo> history = new ArrayList<>();
+                ConfigurationSection historySection = versionConfig.getConfigurationSection(path + "history");
+                if (historySection != null) {
+                    for (String index : historySection.getKeys(false)) {
+                        history.add(readInfo(versionConfig, path + "history." + index + "."));
+                    }
+                }
+                historyMap.put(key, history);
             }
         }
+
+        journal.load();
+        saveVersionFile();
+
+        // Conservar el archivo original como copia, pero que no parezca el archivo en uso
+        File backupFile = new File(versionFile.getPath() + ".bak");
+        if (versionFile.renameTo(backupFile)) {
+            logger.info("Importadas " + pluginInfoMap.size() + " versiones de versions.yml. Copia del original en " + backupFile.getName());
+        }
     }
 
-    public void saveVersionFile() {
-        // Guardar la información actual
-        for (Map.Entry<String, PluginInfo> entry : pluginInfoMap.entrySet()) {
-            String key = entry.getKey();
-            PluginInfo info = entry.getValue();
+    private static PluginInfo readInfo(YamlConfiguration versionConfig, String path) {
+        String artifactId = versionConfig.getString(path + "artifactId");
+        String version = versionConfig.getString(path + "version");
+        long runId = versionConfig.getLong(path + "runId");
+        String fileName = versionConfig.getString(path + "fileName");
+        String sha256 = versionConfig.getString(path + "sha256");
+        long size = versionConfig.getLong(path + "size", -1);
+
+        return new PluginInfo(artifactId, version, runId, fileName, sha256, size);
+    }
+
+    /**
+     * Guarda una instantánea con todas las versiones y vacía el diario.
+     * No hace falta llamarlo tras cada cambio: los cambios ya se guardan en el diario al hacerlos.
+     */
+    public synchronized void saveVersionFile() {
+        journal.compact(snapshot());
+    }
+
+    /**
+     * Guarda una instantánea y cierra el diario
+     */
+    public synchronized void close() {
+        saveVersionFile();
+        journal.close();
+    }
 
-            String path = "plugins." + key + ".";
-            versionConfig.set(path + "artifactId", info.getArtifactId());
-            versionConfig.set(path + "version", info.getVersion());
-            versionConfig.set(path + "runId", info.getRunId());
-            versionConfig.set(path + "fileName", info.getFileName());
+    private Map<String, VersionJournal.State> snapshot() {
+        Map<String, VersionJournal.State> states = new LinkedHashMap<>();
+        for (Map.Entry<String, PluginInfo> entry : pluginInfoMap.entrySet()) {
+            states.put(entry.getKey(), stateOf(entry.getKey()));
         }
+        return states;
+    }
 
-        try {
-            versionConfig.save(versionFile);
-        } catch (IOException e) {
-            logger.severe("No se pudo guardar el archivo de versiones: " + e.getMessage());
+    private VersionJournal.State stateOf(String repoKey) {
+        List<PluginInfo> history = historyMap.get(repoKey);
+        Long skippedRunId = skippedRunMap.get(repoKey);
+        return new VersionJournal.State(pluginInfoMap.get(repoKey),
+                history != null ? new ArrayList<>(history) : Collections.<PluginInfo>emptyList(),
+                skippedRunId != null ? skippedRunId : -1);
+    }
+
+    // Añade el cambio al diario y lo compacta si ha crecido demasiado
+    private void persist(String repoKey) {
+        journal.append(repoKey, stateOf(repoKey));
+        if (journal.needsCompaction()) {
+            saveVersionFile();
         }
     }
 
@@ -79,6 +148,14 @@ public class VersionTracker {
         return info.getRunId() != runId || !info.getArtifactId().equals(String.valueOf(artifactId));
     }
 
+    /**
+     * @return ID de ejecución de la versión instalada, o -1 si no hay ninguna
+     */
+    public long getCurrentRunId(String repoKey) {
+        PluginInfo info = pluginInfoMap.get(repoKey);
+        return info != null ? info.getRunId() : -1;
+    }
+
     public String getCurrentPluginFileName(String repoKey) {
         if (pluginInfoMap.containsKey(repoKey)) {
             return pluginInfoMap.get(repoKey).getFileName();
@@ -87,22 +164,156 @@ public class VersionTracker {
     }
 
     public void updatePluginInfo(String repoKey, String artifactId, String version, long runId, String fileName) {
-        pluginInfoMap.put(repoKey, new PluginInfo(artifactId, version, runId, fileName));
-        saveVersionFile();
+        updatePluginInfo(repoKey, artifactId, version, runId, fileName, null, -1);
+    }
+
+    public void updatePluginInfo(String repoKey, String artifactId, String version, long runId, String fileName,
+                                 String sha256, long size) {
+        updatePluginInfo(repoKey, artifactId, version, runId, fileName, sha256, size, null);
+    }
+
+    /**
+     * @param fingerprint Huella del artefacto instalado (ver {@link ArtifactFingerprint}), o null si no se conoce
+     */
+    public void updatePluginInfo(String repoKey, String artifactId, String version, long runId, String fileName,
+                                 String sha256, long size, String fingerprint) {
+        synchronized (this) {
+            PluginInfo previous = pluginInfoMap.put(repoKey, new PluginInfo(artifactId, version, runId, fileName, sha256, size, fingerprint));
+            // Se ha instalado una versión a propósito: ya no hay nada que evitar
+            skippedRunMap.remove(repoKey);
+
+            // Guardar la versión anterior para poder volver a ella, si su contenido es distinto
+            if (previous != null && previous.getSha256() != null && !previous.getSha256().equals(sha256)) {
+                List<PluginInfo> history = historyMap.computeIfAbsent(repoKey, k -> new ArrayList<>());
+                history.removeIf(info -> previous.getSha256().equals(info.getSha256()));
+                history.add(0, previous);
+                while (history.size() > historyLimit) {
+                    history.remove(history.size() - 1);
+                }
+            }
+            persist(repoKey);
+        }
+    }
+
+    /**
+     * Marca como actual una ejecución nueva cuyo artefacto es idéntico al instalado, sin cambiar el JAR ni el historial
+     */
+    public void markCurrent(String repoKey, String artifactId, String version, long runId) {
+        synchronized (this) {
+            PluginInfo current = pluginInfoMap.get(repoKey);
+            if (current == null) {
+                return;
+            }
+            pluginInfoMap.put(repoKey, new PluginInfo(artifactId, version, runId, current.getFileName(),
+                    current.getSha256(), current.getSize(), current.getFingerprint()));
+            persist(repoKey);
+        }
+    }
+
+    /**
+     * @return La huella del artefacto instalado, o null si no se conoce
+     */
+    public String getFingerprint(String repoKey) {
+        PluginInfo info = pluginInfoMap.get(repoKey);
+        return info != null ? info.getFingerprint() : null;
+    }
+
+    /**
+     * Devuelve la versión anterior de un plugin que está más arriba en el historial, sin modificar nada
+     * @return La versión anterior, o null si no hay historial
+     */
+    public PluginInfo getPreviousVersion(String repoKey) {
+        synchronized (this) {
+            List<PluginInfo> history = historyMap.get(repoKey);
+            return history == null || history.isEmpty() ? null : history.get(0);
+        }
+    }
+
+    /**
+     * Vuelve a la versión anterior de un plugin. La versión actual se descarta del historial
+     * y su ejecución (y las anteriores) no se vuelven a instalar solas hasta un {@code /pluginloader update}.
+     * @return La versión restaurada, o null si no hay historial
+     */
+    public PluginInfo rollback(String repoKey) {
+        PluginInfo restored;
+        synchronized (this) {
+            List<PluginInfo> history = historyMap.get(repoKey);
+            if (history == null || history.isEmpty()) {
+                return null;
+            }
+            restored = history.remove(0);
+            PluginInfo discarded = pluginInfoMap.put(repoKey, restored);
+            if (discarded != null) {
+                skippedRunMap.merge(repoKey, discarded.getRunId(), Math::max);
+            }
+            persist(repoKey);
+        }
+        return restored;
+    }
+
+    /**
+     * @return ID de la ejecución que se deshizo con un rollback, o -1 si no hay ninguna.
+     * Las ejecuciones con un ID menor o igual no se instalan automáticamente.
+     */
+    public long getSkippedRunId(String repoKey) {
+        Long skippedRunId = skippedRunMap.get(repoKey);
+        return skippedRunId != null ? skippedRunId : -1;
+    }
+
+    /**
+     * Olvida la ejecución descartada con un rollback, para que se pueda volver a instalar
+     * @return true si había una
+     */
+    public boolean clearSkippedRun(String repoKey) {
+        synchronized (this) {
+            if (skippedRunMap.remove(repoKey) == null) {
+                return false;
+            }
+            persist(repoKey);
+            return true;
+        }
+    }
+
+    /**
+     * Hashes de contenido de las versiones instaladas actualmente
+     */
+    public Set<String> getInstalledHashes() {
+        Set<String> hashes = new HashSet<>();
+        for (PluginInfo info : pluginInfoMap.values()) {
+            if (info.getSha256() != null) {
+                hashes.add(info.getSha256());
+            }
+        }
+        return hashes;
+    }
+
+    public void setHistoryLimit(int historyLimit) {
+        this.historyLimit = Math.max(0, historyLimit);
     }
 
     // Clase interna para almacenar información sobre las versiones de los plugins
-    private static class PluginInfo {
+    public static class PluginInfo {
         private final String artifactId;
         private final String version;
         private final long runId;
         private final String fileName;
+        private final String sha256;
+        private final long size;
+        private final String fingerprint;
 
-        public PluginInfo(String artifactId, String version, long runId, String fileName) {
+        public PluginInfo(String artifactId, String version, long runId, String fileName, String sha256, long size) {
+            this(artifactId, version, runId, fileName, sha256, size, null);
+        }
+
+        public PluginInfo(String artifactId, String version, long runId, String fileName, String sha256, long size,
+                          String fingerprint) {
             this.artifactId = artifactId;
             this.version = version;
             this.runId = runId;
             this.fileName = fileName;
+            this.sha256 = sha256;
+            this.size = size;
+            this.fingerprint = fingerprint;
         }
 
         public String getArtifactId() {
@@ -120,5 +331,20 @@ public class VersionTracker {
         public String getFileName() {
             return fileName;
         }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return CRC32 y tamaño de los JARs del artefacto, o null si se instaló con una versión anterior del loader
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
     }
 }
\ No newline at end of file
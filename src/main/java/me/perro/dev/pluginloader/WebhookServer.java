@@ -0,0 +1,284 @@
+package me.perro.dev.pluginloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Servidor HTTP que recibe los webhooks workflow_run de GitHub. Cada entrega se verifica con su firma
+ * (X-Hub-Signature-256, HMAC-SHA256 del cuerpo con el secreto configurado) y las ejecuciones completadas
+ * con éxito se pasan al listener, que decide qué repositorios comprobar. Se responde enseguida:
+ * la comprobación y la descarga se hacen después, fuera del hilo del servidor.
+ */
+public class WebhookServer {
+    // GitHub limita los payloads a 25 MB, pero un workflow_run ocupa unas decenas de KB
+    private static final int MAX_BODY = 1024 * 1024;
+    // Entregas recientes que se recuerdan para rechazar repeticiones
+    private static final int RECENT_DELIVERIES = 1000;
+
+    private final String secret;
+    private final Listener listener;
+    private final Metrics metrics;
+    private final Logger logger;
+    private HttpServer server;
+    private ExecutorService executor;
+    // IDs de X-GitHub-Delivery ya aceptados, del más antiguo al más reciente
+    private final Map<String, Boolean> recentDeliveries = new LinkedHashMap<String, Boolean>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_DELIVERIES;
+        }
+    };
+
+    /**
+     * Recibe las ejecuciones completadas con éxito
+     */
+    public interface Listener {
+        /**
+         * @return Número de repositorios configurados que corresponden a la ejecución
+         */
+        int onWorkflowRun(WorkflowRun run);
+    }
+
+    public WebhookServer(String secret, Listener listener, Metrics metrics, Logger logger) {
+        this.secret = secret;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    /**
+     * Arranca el servidor
+     * @param bind Dirección donde escuchar
+     * @param port Puerto
+     * @param path Ruta configurada en el webhook de GitHub
+     */
+    public void start(String bind, int port, String path) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        server.createContext(path, this::handle);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PluginLoader-Webhook");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Webhook de GitHub escuchando en http://" + bind + ":" + port + path);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                respond(exchange, 413, "payload demasiado grande", "too_large");
+                return;
+            }
+            if (!verifySignature(body, exchange.getRequestHeaders().getFirst("X-Hub-Signature-256"))) {
+                logger.warning("Webhook rechazado: firma no válida (entrega " + exchange.getRequestHeaders().getFirst("X-GitHub-Delivery") + ")");
+                respond(exchange, 401, "firma no válida", "unauthorized");
+                return;
+            }
+
+            // Una entrega firmada se puede reenviar tal cual: cada ID de entrega solo se acepta una vez
+            String delivery = exchange.getRequestHeaders().getFirst("X-GitHub-Delivery");
+            if (delivery == null || delivery.isEmpty()) {
+                respond(exchange, 400, "falta X-GitHub-Delivery", "invalid");
+                return;
+            }
+            if (!rememberDelivery(delivery)) {
+                logger.info("Webhook ignorado: la entrega " + delivery + " ya se recibió.");
+                respond(exchange, 200, "entrega repetida", "duplicate");
+                return;
+            }
+
+            String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+            if ("ping".equals(event)) {
+                respond(exchange, 200, "pong", "ping");
+                return;
+            }
+            if (!"workflow_run".equals(event)) {
+                respond(exchange, 200, "evento ignorado", "ignored");
+                return;
+            }
+
+            WorkflowRun run;
+            try {
+                run = WorkflowRun.parse(new String(body, StandardCharsets.UTF_8));
+            } catch (ParseException | RuntimeException e) {
+                respond(exchange, 400, "payload no válido", "invalid");
+                return;
+            }
+            if (run == null) {
+                // Ejecución solicitada, en curso o fallida
+                respond(exchange, 200, "ejecución ignorada", "ignored");
+                return;
+            }
+
+            int matched = listener.onWorkflowRun(run);
+            if (matched == 0) {
+                respond(exchange, 200, "ningún repositorio configurado coincide", "unmatched");
+            } else {
+                respond(exchange, 202, "comprobando " + matched + " repositorios", "accepted");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String message, String result) throws IOException {
+        metrics.increment("pluginloader_webhook_deliveries_total", "Entregas de webhooks de GitHub recibidas por resultado", 1, "result", result);
+        byte[] response = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /**
+     * @return false si la entrega ya se había recibido
+     */
+    boolean rememberDelivery(String delivery) {
+        synchronized (recentDeliveries) {
+            return recentDeliveries.put(delivery, Boolean.TRUE) == null;
+        }
+    }
+
+    // El cuerpo completo, o null si supera el máximo
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_BODY) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Comprueba la cabecera X-Hub-Signature-256 ("sha256=" y el HMAC en hexadecimal) en tiempo constante
+     */
+    boolean verifySignature(byte[] body, String header) {
+        if (header == null || !header.startsWith("sha256=")) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = toHex(mac.doFinal(body)).getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = header.substring(7).trim().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Detiene el servidor
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Datos de una ejecución completada con éxito, tomados del payload del webhook
+     */
+    public static class WorkflowRun {
+        private final String owner;
+        private final String repo;
+        private final String workflowFile;
+        private final long workflowId;
+        private final String branch;
+        private final long runId;
+
+        WorkflowRun(String owner, String repo, String workflowFile, long workflowId, String branch, long runId) {
+            this.owner = owner;
+            this.repo = repo;
+            this.workflowFile = workflowFile;
+            this.workflowId = workflowId;
+            this.branch = branch;
+            this.runId = runId;
+        }
+
+        /**
+         * @return La ejecución, o null si no está completada con éxito
+         */
+        static WorkflowRun parse(String json) throws ParseException {
+            JSONObject payload = (JSONObject) new JSONParser().parse(json);
+            JSONObject run = (JSONObject) payload.get("workflow_run");
+            JSONObject repository = (JSONObject) payload.get("repository");
+            if (!"completed".equals(payload.get("action")) || run == null || repository == null
+                    || !"success".equals(run.get("conclusion"))) {
+                return null;
+            }
+
+            String fullName = (String) repository.get("full_name");
+            int slash = fullName.indexOf('/');
+            String path = (String) run.get("path");
+            String workflowFile = path != null ? path.substring(path.lastIndexOf('/') + 1) : "";
+            Number workflowId = (Number) run.get("workflow_id");
+            return new WorkflowRun(fullName.substring(0, slash), fullName.substring(slash + 1), workflowFile,
+                    workflowId != null ? workflowId.longValue() : -1, (String) run.get("head_branch"), ((Number) run.get("id")).longValue());
+        }
+
+        /**
+         * @return true si la ejecución es del repositorio, workflow y rama configurados
+         */
+        public boolean matches(RepositorySpec spec) {
+            return spec.getOwner().equalsIgnoreCase(owner) && spec.getRepo().equalsIgnoreCase(repo)
+                    && spec.getBranch().equals(branch)
+                    && (spec.getWorkflow().equals(workflowFile) || spec.getWorkflow().equals(String.valueOf(workflowId)));
+        }
+
+        public String getRepository() {
+            return owner + "/" + repo;
+        }
+
+        public long getRunId() {
+            return runId;
+        }
+    }
+}
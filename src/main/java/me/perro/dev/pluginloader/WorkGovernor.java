@@ -0,0 +1,210 @@
+package me.perro.dev.pluginloader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Regula el trabajo pesado en segundo plano (descargas y extracción) para que no compita con el hilo principal.
+ * Limita los bytes por segundo con un token bucket común a todas las descargas y otro a todas las extracciones,
+ * y pausa ambas mientras el tick medio supere el umbral configurado.
+ * El tick se mide como el tiempo entre dos ticks seguidos, así que vale 50 ms mientras el servidor va a 20 TPS.
+ * Hasta el primer tick (durante el arranque) no se limita nada.
+ */
+public class WorkGovernor {
+    private static final long PAUSE_CHECK_MILLIS = 100;
+    // Tamaño máximo de cada lectura regulada, para repartir las esperas
+    private static final int MAX_CHUNK = 16 * 1024;
+    // Peso de cada tick nuevo en la media
+    private static final double TICK_SMOOTHING = 0.1;
+
+    private final TokenBucket downloadBucket = new TokenBucket();
+    private final TokenBucket extractionBucket = new TokenBucket();
+    private volatile double pauseAboveMillis;
+    private volatile long maxPauseMillis;
+
+    // Solo se escribe desde el hilo principal
+    private volatile long lastTickNanos;
+    private volatile double averageTickNanos;
+
+    private final LongAdder pauses = new LongAdder();
+    private final LongAdder pausedMillis = new LongAdder();
+    private final LongAdder throttledMillis = new LongAdder();
+
+    /**
+     * @param downloadBytesPerSecond Límite de descarga; 0 para no limitar
+     * @param extractionBytesPerSecond Límite de escritura al extraer; 0 para no limitar
+     * @param pauseAboveMillis Tick medio a partir del cual se pausa; 0 para no pausar
+     * @param maxPauseMillis Pausa máxima seguida, tras la que se continúa aunque el servidor siga cargado
+     */
+    public void configure(long downloadBytesPerSecond, long extractionBytesPerSecond, double pauseAboveMillis, long maxPauseMillis) {
+        downloadBucket.setRate(downloadBytesPerSecond);
+        extractionBucket.setRate(extractionBytesPerSecond);
+        this.pauseAboveMillis = pauseAboveMillis;
+        this.maxPauseMillis = maxPauseMillis;
+    }
+
+    /**
+     * Se llama en cada tick desde el hilo principal
+     */
+    public void onTick() {
+        long now = System.nanoTime();
+        long last = lastTickNanos;
+        if (last != 0) {
+            long duration = now - last;
+            averageTickNanos = averageTickNanos == 0 ? duration : averageTickNanos + (duration - averageTickNanos) * TICK_SMOOTHING;
+        }
+        lastTickNanos = now;
+    }
+
+    /**
+     * Deja de medir los ticks (al deshabilitar el plugin), para no pausar por un tick que ya no va a llegar
+     */
+    public void stopTicking() {
+        lastTickNanos = 0;
+        averageTickNanos = 0;
+    }
+
+    /**
+     * @return Duración del tick en ms: la media, o lo que lleva el tick actual si es mayor (un tick bloqueado no
+     * llega a contar en la media). 0 si todavía no hay ticks.
+     */
+    public double getTickMillis() {
+        long last = lastTickNanos;
+        if (last == 0) {
+            return 0;
+        }
+        return Math.max(averageTickNanos, System.nanoTime() - last) / 1_000_000.0;
+    }
+
+    /**
+     * Espera mientras el servidor esté sobrecargado, como mucho la pausa máxima configurada
+     */
+    public void awaitHealthy() throws InterruptedIOException {
+        double threshold = pauseAboveMillis;
+        if (threshold <= 0 || getTickMillis() <= threshold) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        pauses.increment();
+        try {
+            while (getTickMillis() > threshold && System.currentTimeMillis() - start < maxPauseMillis) {
+                sleep(TimeUnit.MILLISECONDS.toNanos(PAUSE_CHECK_MILLIS));
+            }
+        } finally {
+            pausedMillis.add(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Descuenta bytes escritos al extraer, esperando si se supera el límite
+     */
+    public void paceExtraction(long bytes) throws InterruptedIOException {
+        pace(extractionBucket, bytes);
+    }
+
+    /**
+     * @return Un flujo que lee del original respetando el límite de descarga y las pausas por carga
+     */
+    public InputStream throttleDownload(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                awaitHealthy();
+                int b = super.read();
+                if (b != -1) {
+                    pace(downloadBucket, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                awaitHealthy();
+                int read = super.read(buffer, offset, Math.min(length, MAX_CHUNK));
+                if (read > 0) {
+                    pace(downloadBucket, read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @return Resumen para /pluginloader stats
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        double tickMillis = getTickMillis();
+        if (tickMillis > 0) {
+            lines.add(String.format("Tick medio: %.1f ms (%.1f TPS)", tickMillis, Math.min(20, 1000 / tickMillis)));
+        }
+        lines.add("Límites: descarga " + formatRate(downloadBucket.getRate()) + ", extracción " + formatRate(extractionBucket.getRate())
+                + (pauseAboveMillis > 0 ? String.format(", pausa con ticks de más de %.0f ms", pauseAboveMillis) : ""));
+        lines.add(String.format("Pausas por carga del servidor: %d (%.1f s); esperas por límite de velocidad: %.1f s",
+                pauses.sum(), pausedMillis.sum() / 1000.0, throttledMillis.sum() / 1000.0));
+        return lines;
+    }
+
+    private void pace(TokenBucket bucket, long bytes) throws InterruptedIOException {
+        // Durante el arranque no hay ticks con los que competir
+        if (lastTickNanos == 0) {
+            return;
+        }
+        long waitNanos = bucket.take(bytes);
+        if (waitNanos > 0) {
+            sleep(waitNanos);
+            throttledMillis.add(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido mientras se esperaba al regulador de trabajo");
+        }
+    }
+
+    private static String formatRate(long bytesPerSecond) {
+        return bytesPerSecond <= 0 ? "sin límite" : String.format("%.1f MB/s", bytesPerSecond / 1048576.0);
+    }
+
+    // Clase interna con un token bucket de bytes: admite ráfagas de hasta un segundo y deja que el saldo
+    // quede en negativo, de modo que cada llamada solo espera por lo que ella misma ha consumido
+    private static class TokenBucket {
+        private long rate;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        synchronized void setRate(long bytesPerSecond) {
+            this.rate = Math.max(0, bytesPerSecond);
+            this.tokens = Math.min(tokens, rate);
+        }
+
+        synchronized long getRate() {
+            return rate;
+        }
+
+        /**
+         * @return Nanosegundos que hay que esperar por estos bytes
+         */
+        synchronized long take(long bytes) {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package me.perro.dev.pluginloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compara la huella calculada leyendo solo el directorio central de un ZIP remoto ({@link ArtifactFingerprint#fetch})
+ * con la calculada a partir de los JARs extraídos ({@link ArtifactFingerprint#of}), que es la que se guarda al instalar.
+ */
+public class ArtifactFingerprintTest {
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("fingerprint").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(folder);
+    }
+
+    @Test
+    public void storedEntries() throws IOException {
+        byte[] zip = zip(ZipEntry.STORED, null, jar("a.jar", 1, 3000), jar("b.jar", 2, 5000));
+        assertFetchMatchesExtracted(zip);
+    }
+
+    @Test
+    public void deflatedEntries() throws IOException {
+        byte[] zip = zip(ZipEntry.DEFLATED, null, jar("a.jar", 1, 3000), jar("libs/b.jar", 2, 20000));
+        assertFetchMatchesExtracted(zip);
+    }
+
+    @Test
+    public void ignoresEntriesThatAreNotJars() throws IOException {
+        byte[] zip = zip(ZipEntry.DEFLATED, null, jar("plugin.jar", 1, 3000), jar("README.txt", 2, 500), jar("docs/", 0, 0));
+        String fingerprint = assertFetchMatchesExtracted(zip);
+        assertEquals(1, fingerprint.split(",").length);
+    }
+
+    @Test
+    public void commentLongerThanTheFirstTailRequest() throws IOException {
+        // El registro de fin de directorio no está en los primeros 8 KB pedidos: hace falta una segunda petición
+        byte[] zip = zip(ZipEntry.DEFLATED, repeat('x', 30000), jar("a.jar", 1, 3000), jar("b.jar", 2, 3000));
+        RangeTransport transport = new RangeTransport(zip, true);
+        assertEquals(fingerprintOf(zip), ArtifactFingerprint.fetch(transport, "artifact", Collections.<String, String>emptyMap()));
+        assertEquals(2, transport.requests);
+    }
+
+    @Test
+    public void centralDirectoryOutsideTheTail() throws IOException {
+        // Muchas entradas con nombres largos: el directorio central no cabe en el final pedido y se pide aparte
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            entries.add(jar("module-" + i + "-" + repeat('n', 60) + ".jar", i, 200));
+        }
+        byte[] zip = zip(ZipEntry.DEFLATED, null, entries.toArray(new Entry[0]));
+        RangeTransport transport = new RangeTransport(zip, true);
+        assertEquals(fingerprintOf(zip), ArtifactFingerprint.fetch(transport, "artifact", Collections.<String, String>emptyMap()));
+        assertEquals(2, transport.requests);
+    }
+
+    @Test
+    public void zip64() throws IOException {
+        byte[] zip = zip64(jar("a.jar", 1, 3000), jar("b.jar", 2, 4000), jar("notes.txt", 3, 100));
+        String fingerprint = assertFetchMatchesExtracted(zip);
+        assertEquals(2, fingerprint.split(",").length);
+    }
+
+    @Test
+    public void differentContentGivesADifferentFingerprint() throws IOException {
+        String first = fetch(zip(ZipEntry.DEFLATED, null, jar("a.jar", 1, 3000)));
+        String second = fetch(zip(ZipEntry.DEFLATED, null, jar("a.jar", 2, 3000)));
+        assertNotNull(first);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void serverWithoutRangeSupport() throws IOException {
+        // Un ZIP más grande que lo pedido no se descarga entero solo para calcular la huella
+        byte[] zip = zip(ZipEntry.STORED, null, jar("a.jar", 1, 20000));
+        assertNull(ArtifactFingerprint.fetch(new RangeTransport(zip, false), "artifact", Collections.<String, String>emptyMap()));
+
+        // Si el ZIP entero cabe en lo pedido, sirve la respuesta completa
+        byte[] small = zip(ZipEntry.STORED, null, jar("a.jar", 1, 1000));
+        assertEquals(fingerprintOf(small), ArtifactFingerprint.fetch(new RangeTransport(small, false), "artifact",
+                Collections.<String, String>emptyMap()));
+    }
+
+    @Test
+    public void notAZip() throws IOException {
+        byte[] data = new byte[4096];
+        new Random(7).nextBytes(data);
+        assertNull(fetch(data));
+    }
+
+    private String assertFetchMatchesExtracted(byte[] zip) throws IOException {
+        String expected = fingerprintOf(zip);
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected, fetch(zip));
+        return expected;
+    }
+
+    private static String fetch(byte[] zip) throws IOException {
+        return ArtifactFingerprint.fetch(new RangeTransport(zip, true), "artifact", Collections.<String, String>emptyMap());
+    }
+
+    // La huella que se guarda al instalar, extrayendo el ZIP en flujo como el plugin
+    private String fingerprintOf(byte[] zip) throws IOException {
+        File destFolder = Files.createTempDirectory(folder.toPath(), "extract").toFile();
+        return ArtifactFingerprint.of(new JarExtractor().extract(new ByteArrayInputStream(zip), destFolder));
+    }
+
+    private static Entry jar(String name, int seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return new Entry(name, data);
+    }
+
+    private static byte[] zip(int method, String comment, Entry... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.setMethod(method);
+            if (comment != null) {
+                zip.setComment(comment);
+            }
+            for (Entry entry : entries) {
+                ZipEntry zipEntry = new ZipEntry(entry.name);
+                if (method == ZipEntry.STORED) {
+                    zipEntry.setSize(entry.data.length);
+                    zipEntry.setCompressedSize(entry.data.length);
+                    zipEntry.setCrc(entry.crc());
+                }
+                zip.putNextEntry(zipEntry);
+                zip.write(entry.data);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // ZIP64 con todos los tamaños y posiciones en los campos extra, como los que se generan para archivos de más de 4 GB
+    private static byte[] zip64(Entry... entries) {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        long[] offsets = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            offsets[i] = out.position();
+            out.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED)
+                    .putShort((short) 0).putShort((short) 0x21).putInt((int) entry.crc())
+                    .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) name.length).putShort((short) 20).put(name)
+                    .putShort((short) 0x0001).putShort((short) 16).putLong(entry.data.length).putLong(entry.data.length)
+                    .put(entry.data);
+        }
+
+        long cdOffset = out.position();
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            out.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED)
+                    .putShort((short) 0).putShort((short) 0x21).putInt((int) entry.crc())
+                    .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) name.length).putShort((short) 28).putShort((short) 0)
+                    .putShort((short) 0).putShort((short) 0).putInt(0).putInt(0xFFFFFFFF).put(name)
+                    .putShort((short) 0x0001).putShort((short) 24).putLong(entry.data.length).putLong(entry.data.length)
+                    .putLong(offsets[i]);
+        }
+        long cdSize = out.position() - cdOffset;
+
+        long zip64Eocd = out.position();
+        out.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(entries.length).putLong(entries.length).putLong(cdSize).putLong(cdOffset);
+        out.putInt(0x07064b50).putInt(0).putLong(zip64Eocd).putInt(1);
+        out.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF).putShort((short) 0xFFFF)
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+
+        byte[] zip = new byte[out.position()];
+        out.flip();
+        out.get(zip);
+        return zip;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    // Clase interna con el nombre y el contenido de una entrada del ZIP
+    private static class Entry {
+        final String name;
+        final byte[] data;
+
+        Entry(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        long crc() {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            return crc.getValue();
+        }
+    }
+
+    // Clase interna que sirve un ZIP desde memoria, con o sin soporte de peticiones Range
+    private static class RangeTransport implements HttpTransport {
+        private final byte[] data;
+        private final boolean rangeSupport;
+        int requests;
+
+        RangeTransport(byte[] data, boolean rangeSupport) {
+            this.data = data;
+            this.rangeSupport = rangeSupport;
+        }
+
+        @Override
+        public Response get(String url, Map<String, String> headers, boolean compressed) {
+            requests++;
+            String range = headers.get("Range");
+            if (!rangeSupport || range == null) {
+                return new StubResponse(200, data, 0, data.length, null);
+            }
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            int start;
+            int end;
+            if (dash == 0) {
+                start = Math.max(0, data.length - Integer.parseInt(spec.substring(1)));
+                end = data.length - 1;
+            } else {
+                start = Integer.parseInt(spec.substring(0, dash));
+                end = Math.min(data.length - 1, Integer.parseInt(spec.substring(dash + 1)));
+            }
+            return new StubResponse(206, data, start, end + 1 - start, "bytes " + start + "-" + end + "/" + data.length);
+        }
+
+        @Override
+        public long getRequestCount() {
+            return requests;
+        }
+
+        @Override
+        public double getAverageLatencyMillis() {
+            return 0;
+        }
+    }
+
+    // Clase interna con una respuesta servida desde memoria
+    private static class StubResponse implements HttpTransport.Response {
+        private final int statusCode;
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final String contentRange;
+
+        StubResponse(int statusCode, byte[] data, int offset, int length, String contentRange) {
+            this.statusCode = statusCode;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.contentRange = contentRange;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (name.equals("Content-Range")) {
+                return contentRange;
+            }
+            return name.equals("Content-Length") ? String.valueOf(length) : null;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(data, offset, length);
+        }
+
+        @Override
+        public long getLatencyMillis() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
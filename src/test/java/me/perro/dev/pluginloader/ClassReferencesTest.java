@@ -0,0 +1,101 @@
+package me.perro.dev.pluginloader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lectura del constant pool con {@link SharedLibraries.ClassReferences}, sobre el .class real de una clase de prueba
+ */
+public class ClassReferencesTest {
+
+    @Test
+    public void findsEveryKindOfReference() throws IOException {
+        Set<String> names;
+        try (InputStream in = ClassReferencesTest.class.getResourceAsStream("ClassReferencesTest$Sample.class")) {
+            names = SharedLibraries.ClassReferences.read(in);
+        }
+
+        // Tipo de un campo
+        assertTrue(names.toString(), names.contains("java/util/concurrent/atomic/AtomicLong.class"));
+        // Argumento de tipo en una firma genérica
+        assertTrue(names.toString(), names.contains("java/util/UUID.class"));
+        // Array
+        assertTrue(names.toString(), names.contains("java/math/BigDecimal.class"));
+        // Clase instanciada en el código
+        assertTrue(names.toString(), names.contains("java/util/zip/CRC32.class"));
+        // Parámetro de un método
+        assertTrue(names.toString(), names.contains("java/util/BitSet.class"));
+        // Interfaz de una lambda (invokedynamic)
+        assertTrue(names.toString(), names.contains("java/util/concurrent/Callable.class"));
+        assertTrue(names.toString(), names.contains("me/perro/dev/pluginloader/ClassReferencesTest$Sample.class"));
+    }
+
+    @Test
+    public void notAClassFile() throws IOException {
+        assertTrue(SharedLibraries.ClassReferences.read(new ByteArrayInputStream(new byte[]{'P', 'K', 3, 4, 0, 0})).isEmpty());
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedClassFile() throws IOException {
+        byte[] bytes;
+        try (InputStream in = ClassReferencesTest.class.getResourceAsStream("ClassReferencesTest$Sample.class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            bytes = out.toByteArray();
+        }
+        SharedLibraries.ClassReferences.read(new ByteArrayInputStream(bytes, 0, 40));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownConstantPoolTag() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(2);
+        out.writeByte(99);
+        SharedLibraries.ClassReferences.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    // Clase interna con referencias de todos los tipos que se buscan, y constantes long, double y String en el pool
+    @SuppressWarnings("unused")
+    private static class Sample {
+        private static final String NAME = "sample";
+        private final AtomicLong counter = new AtomicLong(1234567890123L);
+        private List<UUID> ids;
+        private BigDecimal[] prices;
+        private double ratio = 0.123456789;
+
+        Object checksum() {
+            return new CRC32();
+        }
+
+        void accept(BitSet set) {
+        }
+
+        Callable<String> task() {
+            return () -> NAME + counter.get();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package me.perro.dev.pluginloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recuperación del diario de versiones: registros completos, registros a medias o dañados e instantáneas
+ */
+public class VersionJournalTest {
+    private File folder;
+    private Logger logger;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("journal").toFile();
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void recordsSurviveReopening() {
+        VersionJournal journal = open();
+        journal.append("a", state(1));
+        journal.append("b", new VersionJournal.State(info(2), Arrays.asList(info(1)), 3));
+        journal.close();
+
+        Map<String, VersionJournal.State> states = open().load();
+        assertEquals(2, states.size());
+        assertInfo(1, states.get("a").getCurrent());
+        assertEquals(-1, states.get("a").getSkippedRunId());
+        assertInfo(2, states.get("b").getCurrent());
+        assertEquals(1, states.get("b").getHistory().size());
+        assertInfo(1, states.get("b").getHistory().get(0));
+        assertEquals(3, states.get("b").getSkippedRunId());
+    }
+
+    @Test
+    public void laterRecordReplacesEarlierOne() {
+        VersionJournal journal = open();
+        journal.append("a", state(1));
+        journal.append("a", state(2));
+        journal.close();
+
+        assertInfo(2, open().load().get("a").getCurrent());
+    }
+
+    @Test
+    public void tornRecordAtTheEndIsDropped() throws IOException {
+        VersionJournal journal = open();
+        journal.append("a", state(1));
+        journal.append("b", state(2));
+        journal.close();
+
+        File journalFile = new File(folder, "versions.journal");
+        long length = journalFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(length - 5);
+        }
+
+        journal = open();
+        Map<String, VersionJournal.State> states = journal.load();
+        assertEquals(Collections.singleton("a"), states.keySet());
+        // El diario se corta en el último registro válido y se puede seguir añadiendo detrás
+        assertTrue(journalFile.length() < length - 5);
+        journal.append("c", state(3));
+        journal.close();
+
+        states = open().load();
+        assertEquals(2, states.size());
+        assertInfo(3, states.get("c").getCurrent());
+    }
+
+    @Test
+    public void recordWithWrongCrcIsDropped() throws IOException {
+        VersionJournal journal = open();
+        journal.append("a", state(1));
+        journal.append("b", state(2));
+        journal.close();
+
+        File journalFile = new File(folder, "versions.journal");
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(file.length() - 3);
+            int value = file.read();
+            file.seek(file.length() - 3);
+            file.write(value ^ 0xFF);
+        }
+
+        Map<String, VersionJournal.State> states = open().load();
+        assertEquals(Collections.singleton("a"), states.keySet());
+    }
+
+    @Test
+    public void compactionWritesSnapshotAndEmptiesJournal() {
+        VersionJournal journal = open();
+        journal.load();
+        journal.append("a", state(1));
+        journal.append("a", state(2));
+        Map<String, VersionJournal.State> states = new LinkedHashMap<>();
+        states.put("a", state(2));
+        states.put("b", state(3));
+        journal.compact(states);
+        assertFalse(journal.needsCompaction());
+        journal.close();
+
+        // Solo queda la cabecera del diario
+        assertEquals(8, new File(folder, "versions.journal").length());
+        Map<String, VersionJournal.State> loaded = open().load();
+        assertEquals(2, loaded.size());
+        assertInfo(2, loaded.get("a").getCurrent());
+        assertInfo(3, loaded.get("b").getCurrent());
+    }
+
+    @Test
+    public void journalIsAppliedOverSnapshot() {
+        VersionJournal journal = open();
+        journal.load();
+        journal.compact(Collections.singletonMap("a", state(1)));
+        journal.append("a", state(2));
+        journal.close();
+
+        assertInfo(2, open().load().get("a").getCurrent());
+    }
+
+    @Test
+    public void damagedSnapshotFallsBackToJournal() throws IOException {
+        VersionJournal journal = open();
+        journal.load();
+        journal.compact(Collections.singletonMap("a", state(1)));
+        journal.append("b", state(2));
+        journal.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder, "versions.dat"), "rw")) {
+            file.seek(12);
+            int value = file.read();
+            file.seek(12);
+            file.write(value ^ 0xFF);
+        }
+
+        Map<String, VersionJournal.State> states = open().load();
+        assertEquals(Collections.singleton("b"), states.keySet());
+    }
+
+    @Test
+    public void nothingSavedYet() {
+        VersionJournal journal = open();
+        assertTrue(journal.isEmpty());
+        assertTrue(journal.load().isEmpty());
+        journal.close();
+        assertNull(open().load().get("a"));
+    }
+
+    private VersionJournal open() {
+        return new VersionJournal(folder, logger);
+    }
+
+    private static VersionJournal.State state(long runId) {
+        return new VersionJournal.State(info(runId), Collections.<VersionTracker.PluginInfo>emptyList());
+    }
+
+    private static VersionTracker.PluginInfo info(long runId) {
+        return new VersionTracker.PluginInfo("artifact-" + runId, "run-" + runId, runId, "plugin-" + runId + ".jar",
+                "sha-" + runId, 1000 + runId, runId % 2 == 0 ? null : "0000000" + runId + ":" + (1000 + runId));
+    }
+
+    private static void assertInfo(long runId, VersionTracker.PluginInfo info) {
+        VersionTracker.PluginInfo expected = info(runId);
+        assertEquals(expected.getArtifactId(), info.getArtifactId());
+        assertEquals(expected.getVersion(), info.getVersion());
+        assertEquals(expected.getRunId(), info.getRunId());
+        assertEquals(expected.getFileName(), info.getFileName());
+        assertEquals(expected.getSha256(), info.getSha256());
+        assertEquals(expected.getSize(), info.getSize());
+        assertEquals(expected.getFingerprint(), info.getFingerprint());
+    }
+}